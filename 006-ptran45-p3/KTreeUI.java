@@ -1,5 +1,9 @@
 import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.StringTokenizer;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
 
 /**
@@ -110,26 +114,32 @@ public class KTreeUI {
 	 *  @return the created k-ary tree
 	 */
 	public static ThreeTenKTree<String> fileToTree(String fileName){
-		Scanner s = null;
-		try{
-			// open file for input
-			s = new Scanner(new File(fileName));				
+		ArrayList<String> tokens = new ArrayList<>();
+		int k = -1;
+		try(BufferedReader in = new BufferedReader(new FileReader(new File(fileName)))){
+			// read whitespace separated tokens, much faster than Scanner on big files
+			String line;
+			while((line = in.readLine()) != null) {
+				StringTokenizer st = new StringTokenizer(line);
+				while(st.hasMoreTokens()) {
+					String val = st.nextToken();
+					if (k == -1) { //first token is k
+						k = Integer.parseInt(val);
+						continue;
+					}
+					if (val.equals("_")) //null nodes should be default array item
+						val = null;
+					tokens.add(val);
+				}
+			}
 		}catch(IOException e) {
 			e.printStackTrace();
 			return null;
 		}
 		
-		int k = Integer.parseInt(s.next());
-		ThreeTenKTree<String> tree = new ThreeTenKTree<>(1, k); //start with one item
-		
-		for(int i = 0; s.hasNext(); i++) {
-			String val = s.next();
-			if (val.equals("_")) //null nodes should be default array item
-				continue;
-			tree.set(i, val); //expand storage as needed
-		}
-		
-		return tree;
+		if (k == -1) //empty file
+			return null;
+		return new ThreeTenKTree<>(tokens, k); //storage is sized once for all tokens
 	}
 
 	/**
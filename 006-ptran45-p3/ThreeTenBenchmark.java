@@ -0,0 +1,657 @@
+/**
+ * Simple timing harness for the hash tables and trees.
+ * Use with the command:
+ * 		java ThreeTenBenchmark [name]
+ * where name picks one benchmark (default: all).
+ * @author Phat Tran
+ */
+public class ThreeTenBenchmark {
+
+	/**
+	 * number of untimed rounds run before measuring.
+	 */
+	private static final int WARMUP = 3;
+
+	/**
+	 * number of timed rounds, the best one is reported.
+	 */
+	private static final int ROUNDS = 5;
+
+	/**
+	 * sink for results so the JIT cannot drop the measured work.
+	 */
+	private static long blackhole;
+
+	/**
+	 * build labels the way tree input files name nodes.
+	 * @param kind "letters" (A..ZZZ), "numbered" (n0, n1, ...) or "numeric" (0, 1, ...)
+	 * @param n number of labels for "numbered" and "numeric"
+	 * @return the labels
+	 */
+	private static String[] labels(String kind, int n) {
+		if(kind.equals("letters")){
+			String[] out = new String[26 + 26 * 26 + 26 * 26 * 26];
+			int count = 0;
+			for(int len = 1; len <= 3; len++){
+				int total = (int)Math.pow(26, len);
+				for(int i = 0; i < total; i++){
+					char[] c = new char[len];
+					int x = i;
+					for(int j = len - 1; j >= 0; j--){
+						c[j] = (char)('A' + x % 26);
+						x /= 26;
+					}
+					out[count++] = new String(c);
+				}
+			}
+			return out;
+		}
+		String[] out = new String[n];
+		for(int i = 0; i < n; i++){
+			out[i] = kind.equals("numbered") ? "n" + i : String.valueOf(i);
+		}
+		return out;
+	}
+
+	/**
+	 * time building a table from the labels and looking every label up.
+	 * @param keys labels to insert
+	 * @param powerOfTwo whether the table uses the power-of-two policy
+	 * @return {build nanos, lookup nanos} of the best round
+	 */
+	private static long[] timeHashTable(String[] keys, boolean powerOfTwo) {
+		long bestBuild = Long.MAX_VALUE;
+		long bestGet = Long.MAX_VALUE;
+		for(int round = 0; round < WARMUP + ROUNDS; round++){
+			long start = System.nanoTime();
+			ThreeTenHashTable<String, Integer> table = new ThreeTenHashTable<>();
+			table.setPowerOfTwo(powerOfTwo);
+			for(int i = 0; i < keys.length; i++){
+				table.put(keys[i], i);
+			}
+			long mid = System.nanoTime();
+			long sum = 0;
+			for(int i = 0; i < keys.length; i++){
+				sum += table.get(keys[i]);
+			}
+			long end = System.nanoTime();
+			blackhole += sum;
+			if(round >= WARMUP){
+				bestBuild = Math.min(bestBuild, mid - start);
+				bestGet = Math.min(bestGet, end - mid);
+			}
+		}
+		return new long[] {bestBuild, bestGet};
+	}
+
+	/**
+	 * compare modulo indexing with power-of-two masking on label distributions.
+	 */
+	private static void benchHashPolicy() {
+		System.out.println("== hash policy: modulo vs power-of-two + spread");
+		System.out.println("labels     n        policy  build(ms)  get(ns/op)  avgDisp  maxDisp");
+		String[] kinds = {"letters", "numbered", "numeric"};
+		for(String kind : kinds){
+			String[] keys = labels(kind, 200_000);
+			for(int p = 0; p < 2; p++){
+				boolean pow2 = (p == 1);
+				long[] t = timeHashTable(keys, pow2);
+				ThreeTenHashTable<String, Integer> table = new ThreeTenHashTable<>();
+				table.setPowerOfTwo(pow2);
+				for(int i = 0; i < keys.length; i++){
+					table.put(keys[i], i);
+				}
+				System.out.printf("%-10s %-8d %-7s %9.1f  %10.1f  %7.2f  %7d%n", kind, keys.length,
+					pow2 ? "pow2" : "modulo", t[0] / 1e6, (double)t[1] / keys.length,
+					table.averageDisplacement(), table.maxDisplacement());
+			}
+		}
+	}
+
+	/**
+	 * run a 90% get / 10% put mix on one shared table from several threads.
+	 * @param threads number of threads
+	 * @param keys preloaded key range
+	 * @param millis how long to run
+	 * @param concurrent true for ThreeTenConcurrentHashTable, false for a locked ThreeTenHashTable
+	 * @return total operations per second
+	 * @throws InterruptedException if interrupted while joining the workers
+	 */
+	private static double mixedThroughput(int threads, int keys, long millis, boolean concurrent)
+		throws InterruptedException {
+		final ThreeTenConcurrentHashTable<Integer, Integer> cTable = new ThreeTenConcurrentHashTable<>();
+		final ThreeTenHashTable<Integer, Integer> lTable = new ThreeTenHashTable<>();
+		lTable.setPowerOfTwo(true);
+		for(int i = 0; i < keys; i++){
+			cTable.put(i, i);
+			lTable.put(i, i);
+		}
+		final long[] ops = new long[threads];
+		final long deadline = System.nanoTime() + millis * 1_000_000L;
+		Thread[] workers = new Thread[threads];
+		for(int t = 0; t < threads; t++){
+			final int id = t;
+			workers[t] = new Thread(() -> {
+				java.util.concurrent.ThreadLocalRandom rnd = java.util.concurrent.ThreadLocalRandom.current();
+				long done = 0;
+				long sum = 0;
+				while(System.nanoTime() < deadline){
+					for(int i = 0; i < 256; i++){
+						int key = rnd.nextInt(keys);
+						boolean write = rnd.nextInt(10) == 0;
+						if(concurrent){
+							if(write){
+								cTable.put(key, i);
+							}
+							else{
+								Integer v = cTable.get(key);
+								sum += (v == null) ? 0 : v;
+							}
+						}
+						else{
+							synchronized(lTable){//the single global lock this replaces
+								if(write){
+									lTable.put(key, i);
+								}
+								else{
+									Integer v = lTable.get(key);
+									sum += (v == null) ? 0 : v;
+								}
+							}
+						}
+					}
+					done += 256;
+				}
+				ops[id] = done + (sum & 1);
+			});
+			workers[t].start();
+		}
+		long total = 0;
+		for(int t = 0; t < threads; t++){
+			workers[t].join();
+			total += ops[t];
+		}
+		return total * 1000.0 / millis;
+	}
+
+	/**
+	 * compare the locked ThreeTenHashTable with ThreeTenConcurrentHashTable for 1..32 threads.
+	 * @throws InterruptedException if interrupted while joining the workers
+	 */
+	private static void benchConcurrent() throws InterruptedException {
+		System.out.println("== concurrent: 90% get / 10% put, 100k keys ("
+			+ Runtime.getRuntime().availableProcessors() + " cpus)");
+		System.out.println("threads  locked(Mops/s)  concurrent(Mops/s)");
+		for(int threads = 1; threads <= 32; threads *= 2){
+			mixedThroughput(threads, 100_000, 200, false);//warmup
+			mixedThroughput(threads, 100_000, 200, true);
+			double locked = mixedThroughput(threads, 100_000, 1000, false);
+			double conc = mixedThroughput(threads, 100_000, 1000, true);
+			System.out.printf("%-7d  %14.2f  %18.2f%n", threads, locked / 1e6, conc / 1e6);
+		}
+	}
+
+	/**
+	 * time every lookup on its own and sort the samples.
+	 * @param lookup the table's get()
+	 * @param keys keys to look up, in order
+	 * @return sorted per-lookup times in nanoseconds of the last round
+	 */
+	private static long[] lookupLatencies(java.util.function.Function<String, Integer> lookup, String[] keys) {
+		long[] samples = new long[keys.length];
+		for(int round = 0; round < WARMUP + 1; round++){
+			long sum = 0;
+			for(int i = 0; i < keys.length; i++){
+				long start = System.nanoTime();
+				Integer v = lookup.apply(keys[i]);
+				samples[i] = System.nanoTime() - start;
+				sum += (v == null) ? 0 : v;
+			}
+			blackhole += sum;
+		}
+		java.util.Arrays.sort(samples);
+		return samples;
+	}
+
+	/**
+	 * print percentiles of sorted latency samples.
+	 * @param table name of the table
+	 * @param lookups "hit" or "miss"
+	 * @param samples sorted samples in nanoseconds
+	 */
+	private static void printLatencies(String table, String lookups, long[] samples) {
+		int n = samples.length;
+		System.out.printf("%-8s %-5s %8d %8d %8d %8d%n", table, lookups, samples[n / 2],
+			samples[(int)(n * 0.99)], samples[(int)(n * 0.999)], samples[n - 1]);
+	}
+
+	/**
+	 * compare per-lookup tail latency of linear probing and cuckoo hashing.
+	 * Misses show the difference best: linear probing walks the whole cluster.
+	 */
+	private static void benchCuckoo() {
+		System.out.println("== tail latency: linear probing vs cuckoo, 200k numbered labels");
+		System.out.println("table    kind    p50(ns)  p99(ns) p999(ns)  max(ns)");
+		String[] keys = labels("numbered", 200_000);
+		String[] absent = new String[keys.length];
+		for(int i = 0; i < keys.length; i++){
+			absent[i] = "x" + i;
+		}
+		ThreeTenHashTable<String, Integer> linear = new ThreeTenHashTable<>();
+		ThreeTenCuckooHashTable<String, Integer> cuckoo = new ThreeTenCuckooHashTable<>();
+		for(int i = 0; i < keys.length; i++){
+			linear.put(keys[i], i);
+			cuckoo.put(keys[i], i);
+		}
+		printLatencies("linear", "hit", lookupLatencies(linear::get, keys));
+		printLatencies("cuckoo", "hit", lookupLatencies(cuckoo::get, keys));
+		printLatencies("linear", "miss", lookupLatencies(linear::get, absent));
+		printLatencies("cuckoo", "miss", lookupLatencies(cuckoo::get, absent));
+		System.out.println("linear maxDisplacement=" + linear.maxDisplacement()
+			+ ", cuckoo stash=" + cuckoo.stashSize());
+	}
+
+	/**
+	 * time loading complete k-ary trees of the given sizes in level order, then looking every node up.
+	 * The large sizes need a big heap, e.g. java -Xmx6g ThreeTenBenchmark ktree 1000000 10000000 50000000.
+	 * @param sizes number of nodes of each tree
+	 * @param k branching factor
+	 */
+	private static void benchKTreeLoad(int[] sizes, int k) {
+		System.out.println("== k-tree load: level-order set(i, i), k=" + k);
+		System.out.println("nodes       height  load(ms)  load(ns/node)  has(ns/op)");
+		for(int n : sizes){
+			ThreeTenKTree<Integer> tree = null;
+			long best = Long.MAX_VALUE;
+			int rounds = (n <= 1_000_000) ? WARMUP + ROUNDS : 1;//big trees once, to bound the run time
+			for(int round = 0; round < rounds; round++){
+				tree = null;//let the previous tree go before building the next one
+				long start = System.nanoTime();
+				tree = new ThreeTenKTree<>(1, k);
+				for(int i = 0; i < n; i++){
+					tree.set(i, i);
+				}
+				long end = System.nanoTime();
+				if(rounds == 1 || round >= WARMUP){
+					best = Math.min(best, end - start);
+				}
+			}
+			long start = System.nanoTime();
+			int found = 0;
+			for(int i = 0; i < n; i++){
+				if(tree.has(i)){
+					found++;
+				}
+			}
+			long has = System.nanoTime() - start;
+			blackhole += found;
+			System.out.printf("%-10d  %6d  %8.1f  %13.1f  %10.1f%n", n, tree.height(), best / 1e6,
+				(double)best / n, (double)has / n);
+		}
+	}
+
+	/**
+	 * compare get/set on a plain array with ThreeTenSegmentedArray, in order and at random slots.
+	 */
+	private static void benchSegments() {
+		int n = 1 << 23;
+		System.out.println("== segmented storage: " + n + " slots, chunk " + ThreeTenSegmentedArray.CHUNK_SIZE);
+		System.out.println("storage     access  set(ns/op)  get(ns/op)");
+		int[] order = new int[n];
+		java.util.Random rnd = new java.util.Random(42);
+		for(int i = 0; i < n; i++){
+			order[i] = rnd.nextInt(n);
+		}
+		Integer value = 7;
+		for(int random = 0; random < 2; random++){
+			long bestArraySet = Long.MAX_VALUE;
+			long bestArrayGet = Long.MAX_VALUE;
+			long bestSegSet = Long.MAX_VALUE;
+			long bestSegGet = Long.MAX_VALUE;
+			for(int round = 0; round < WARMUP + ROUNDS; round++){
+				Object[] array = new Object[n];
+				ThreeTenSegmentedArray<Integer> seg = new ThreeTenSegmentedArray<>(n);
+				long t0 = System.nanoTime();
+				for(int i = 0; i < n; i++){
+					array[(random == 1) ? order[i] : i] = value;
+				}
+				long t1 = System.nanoTime();
+				long sum = 0;
+				for(int i = 0; i < n; i++){
+					Object v = array[(random == 1) ? order[i] : i];
+					sum += (v == null) ? 0 : 1;
+				}
+				long t2 = System.nanoTime();
+				for(int i = 0; i < n; i++){
+					seg.set((random == 1) ? order[i] : i, value);
+				}
+				long t3 = System.nanoTime();
+				for(int i = 0; i < n; i++){
+					Integer v = seg.get((random == 1) ? order[i] : i);
+					sum += (v == null) ? 0 : 1;
+				}
+				long t4 = System.nanoTime();
+				blackhole += sum;
+				if(round >= WARMUP){
+					bestArraySet = Math.min(bestArraySet, t1 - t0);
+					bestArrayGet = Math.min(bestArrayGet, t2 - t1);
+					bestSegSet = Math.min(bestSegSet, t3 - t2);
+					bestSegGet = Math.min(bestSegGet, t4 - t3);
+				}
+			}
+			String access = (random == 1) ? "random" : "seq";
+			System.out.printf("%-10s  %-6s  %10.2f  %10.2f%n", "array", access,
+				(double)bestArraySet / n, (double)bestArrayGet / n);
+			System.out.printf("%-10s  %-6s  %10.2f  %10.2f%n", "segmented", access,
+				(double)bestSegSet / n, (double)bestSegGet / n);
+		}
+	}
+
+	/**
+	 * time isLeaf, getChildren and toStringLevelOrder on a wide, mostly empty tree.
+	 * k=1024, every level-1 node has 4 children, so nearly all child slots are empty.
+	 * @param sparse whether the tree may switch to sparse storage
+	 */
+	private static void benchWideTree(boolean sparse) {
+		int k = 1024;
+		ThreeTenKTree<Integer> tree = new ThreeTenKTree<>(1, k);
+		if(!sparse){
+			tree.setSparseThreshold(0);
+		}
+		tree.set(0, 0);
+		java.util.Random rnd = new java.util.Random(42);
+		int value = 1;
+		for(int i = 1; i <= k; i++){
+			tree.set(i, value++);
+		}
+		for(int i = 1; i <= k; i++){
+			for(int c = 0; c < 4; c++){
+				tree.set(k * i + 1 + rnd.nextInt(k), value++);
+			}
+		}
+		int nodes = tree.size();
+		System.out.println("== wide tree: k=" + k + ", " + nodes + " nodes, capacity " + tree.capacity()
+			+ (tree.isSparse() ? ", sparse" : ", dense"));
+		long bestLeaf = Long.MAX_VALUE;
+		long bestChildren = Long.MAX_VALUE;
+		long bestLevel = Long.MAX_VALUE;
+		for(int round = 0; round < WARMUP + ROUNDS; round++){
+			long t0 = System.nanoTime();
+			long sum = 0;
+			for(int v = 0; v < value; v++){
+				sum += tree.isLeaf(v) ? 1 : 0;
+			}
+			long t1 = System.nanoTime();
+			for(int v = 0; v < value; v++){
+				String children = tree.getChildren(v);
+				sum += (children == null) ? 0 : children.length();
+			}
+			long t2 = System.nanoTime();
+			sum += tree.toStringLevelOrder().length();
+			long t3 = System.nanoTime();
+			blackhole += sum;
+			if(round >= WARMUP){
+				bestLeaf = Math.min(bestLeaf, t1 - t0);
+				bestChildren = Math.min(bestChildren, t2 - t1);
+				bestLevel = Math.min(bestLevel, t3 - t2);
+			}
+		}
+		System.out.printf("isLeaf %.1f ns/node, getChildren %.1f ns/node, toStringLevelOrder %.2f ms%n",
+			(double)bestLeaf / value, (double)bestChildren / value, bestLevel / 1e6);
+	}
+
+	/**
+	 * run a 99% read / 1% write mix on one shared tree from several threads.
+	 * Reads are has/getChildren/getAncestors of random nodes; each thread writes by
+	 * adding or removing its own leaf, so the tree shape stays stable.
+	 * @param threads number of threads
+	 * @param nodes nodes preloaded in a 4-ary tree
+	 * @param millis how long to run
+	 * @param stamped true for ThreeTenStampedKTree, false for ThreeTenKTree behind one lock
+	 * @return total operations per second
+	 * @throws InterruptedException if interrupted while joining the workers
+	 */
+	private static double treeThroughput(int threads, int nodes, long millis, boolean stamped)
+		throws InterruptedException {
+		java.util.List<Integer> tokens = new java.util.ArrayList<>();
+		for(int i = 0; i < nodes; i++){
+			tokens.add(i);
+		}
+		final ThreeTenStampedKTree<Integer> sTree = new ThreeTenStampedKTree<>(tokens, 4);
+		final ThreeTenKTree<Integer> lTree = new ThreeTenKTree<>(tokens, 4);
+		final long[] ops = new long[threads];
+		final long deadline = System.nanoTime() + millis * 1_000_000L;
+		Thread[] workers = new Thread[threads];
+		for(int t = 0; t < threads; t++){
+			final int id = t;
+			final int leaf = nodes + t;//free slot whose parent is in the tree
+			workers[t] = new Thread(() -> {
+				java.util.concurrent.ThreadLocalRandom rnd = java.util.concurrent.ThreadLocalRandom.current();
+				long done = 0;
+				long sum = 0;
+				boolean added = false;
+				while(System.nanoTime() < deadline){
+					for(int i = 0; i < 256; i++){
+						int v = rnd.nextInt(nodes);
+						int op = rnd.nextInt(300);
+						if(stamped){
+							if(op < 3){
+								sum += sTree.set(leaf, added ? null : leaf) ? 1 : 0;
+								added = !added;
+							}
+							else if(op < 100){
+								sum += sTree.has(v) ? 1 : 0;
+							}
+							else if(op < 200){
+								sum += sTree.getChildren(v).length();
+							}
+							else{
+								sum += sTree.getAncestors(v).length();
+							}
+						}
+						else{
+							synchronized(lTree){//the coarse lock this replaces
+								if(op < 3){
+									sum += lTree.set(leaf, added ? null : leaf) ? 1 : 0;
+									added = !added;
+								}
+								else if(op < 100){
+									sum += lTree.has(v) ? 1 : 0;
+								}
+								else if(op < 200){
+									sum += lTree.getChildren(v).length();
+								}
+								else{
+									sum += lTree.getAncestors(v).length();
+								}
+							}
+						}
+					}
+					done += 256;
+				}
+				ops[id] = done + (sum & 1);
+			});
+			workers[t].start();
+		}
+		long total = 0;
+		for(int t = 0; t < threads; t++){
+			workers[t].join();
+			total += ops[t];
+		}
+		return total * 1000.0 / millis;
+	}
+
+	/**
+	 * compare a locked ThreeTenKTree with ThreeTenStampedKTree for 1..64 threads.
+	 * @throws InterruptedException if interrupted while joining the workers
+	 */
+	private static void benchStamped() throws InterruptedException {
+		System.out.println("== k-tree reads: 99% has/getChildren/getAncestors, 1% set, 100k nodes ("
+			+ Runtime.getRuntime().availableProcessors() + " cpus)");
+		System.out.println("threads  locked(Mops/s)  stamped(Mops/s)");
+		for(int threads = 1; threads <= 64; threads *= 2){
+			treeThroughput(threads, 100_000, 200, false);//warmup
+			treeThroughput(threads, 100_000, 200, true);
+			double locked = treeThroughput(threads, 100_000, 1000, false);
+			double stamped = treeThroughput(threads, 100_000, 1000, true);
+			System.out.printf("%-7d  %14.2f  %15.2f%n", threads, locked / 1e6, stamped / 1e6);
+		}
+	}
+
+	/**
+	 * time k producers filling the k subtrees of the root, each level by level.
+	 * @param k branching factor, also the number of producers
+	 * @param levels depth of the finished tree
+	 * @param striped true for ThreeTenStripedKTree, false for ThreeTenStampedKTree (one write lock)
+	 * @return milliseconds until every producer is done
+	 * @throws InterruptedException if interrupted while joining the producers
+	 */
+	private static double parallelBuild(int k, int levels, boolean striped) throws InterruptedException {
+		final ThreeTenStripedKTree<Integer> sTree = new ThreeTenStripedKTree<>(1, k, 1);
+		final ThreeTenStampedKTree<Integer> lTree = new ThreeTenStampedKTree<>(1, k);
+		if(striped){
+			sTree.set(0, 0);
+		}
+		else{
+			lTree.set(0, 0);
+		}
+		Thread[] producers = new Thread[k];
+		long start = System.nanoTime();
+		for(int p = 0; p < k; p++){
+			final long child = p + 1;
+			producers[p] = new Thread(() -> {
+				long first = child;
+				long count = 1;
+				for(int level = 1; level <= levels; level++){
+					for(long i = first; i < first + count; i++){
+						if(striped){
+							sTree.set((int)i, (int)i);
+						}
+						else{
+							lTree.set((int)i, (int)i);
+						}
+					}
+					first = first * k + 1;
+					count *= k;
+				}
+			});
+			producers[p].start();
+		}
+		for(Thread p : producers){
+			p.join();
+		}
+		double millis = (System.nanoTime() - start) / 1e6;
+		blackhole += striped ? sTree.size() : lTree.size();
+		return millis;
+	}
+
+	/**
+	 * compare one write lock with subtree-striped locks for a parallel build.
+	 * @throws InterruptedException if interrupted while joining the producers
+	 */
+	private static void benchStriped() throws InterruptedException {
+		System.out.println("== parallel k-tree build, one producer per root subtree ("
+			+ Runtime.getRuntime().availableProcessors() + " cpus)");
+		System.out.println("k  nodes      one-lock(ms)  striped(ms)");
+		int[][] shapes = {{2, 18}, {4, 9}, {8, 6}};
+		for(int[] shape : shapes){
+			for(int i = 0; i < WARMUP; i++){
+				parallelBuild(shape[0], shape[1], false);
+				parallelBuild(shape[0], shape[1], true);
+			}
+			double locked = 0;
+			double striped = 0;
+			for(int i = 0; i < ROUNDS; i++){
+				locked += parallelBuild(shape[0], shape[1], false);
+				striped += parallelBuild(shape[0], shape[1], true);
+			}
+			long nodes = ((long)Math.pow(shape[0], shape[1] + 1) - 1) / (shape[0] - 1);
+			System.out.printf("%-2d %-10d %12.1f %12.1f%n", shape[0], nodes, locked / ROUNDS, striped / ROUNDS);
+		}
+	}
+
+	/**
+	 * build a k-ary tree in memory-mapped files, then time reopening it and its first lookups.
+	 * @param nodes number of nodes, in level order
+	 * @param k branching factor
+	 * @throws java.io.IOException if the temporary tree files cannot be used
+	 */
+	private static void benchMapped(int nodes, int k) throws java.io.IOException {
+		System.out.println("== mapped k-tree: " + nodes + " int nodes, k=" + k);
+		java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("ktree");
+		java.nio.file.Path file = dir.resolve("tree");
+		java.nio.file.Path idx = java.nio.file.Paths.get(file + ".idx");
+		long start = System.nanoTime();
+		ThreeTenKTree<Integer> tree = ThreeTenKTree.open(file, ThreeTenValueCodec.ints(), k);
+		for(int i = 0; i < nodes; i++){
+			tree.set(i, i);
+		}
+		tree.close();
+		long built = System.nanoTime() - start;
+		start = System.nanoTime();
+		tree = ThreeTenKTree.open(file, ThreeTenValueCodec.ints(), k);
+		long opened = System.nanoTime() - start;
+		java.util.Random rnd = new java.util.Random(1);
+		start = System.nanoTime();
+		for(int i = 0; i < 1000; i++){
+			blackhole += tree.getAncestors(rnd.nextInt(nodes)).length();
+		}
+		long lookups = System.nanoTime() - start;
+		System.out.printf("build+force %.1f ms, files %.1f MB, open %.3f ms, 1000 getAncestors %.2f ms%n",
+			built / 1e6, (java.nio.file.Files.size(file) + java.nio.file.Files.size(idx)) / 1e6,
+			opened / 1e6, lookups / 1e6);
+		tree.close();
+		java.nio.file.Files.delete(file);
+		java.nio.file.Files.delete(idx);
+		java.nio.file.Files.delete(dir);
+	}
+
+	/**
+	 * runs the selected benchmarks.
+	 * @param args optional benchmark name: hash, concurrent, stamped, striped, cuckoo, segments, wide, mapped, ktree;
+	 * 		ktree takes the tree sizes as further arguments (default 1000000 10000000 50000000)
+	 * @throws InterruptedException if a multi-threaded benchmark is interrupted
+	 * @throws java.io.IOException if the mapped benchmark cannot use its temporary files
+	 */
+	public static void main(String[] args) throws InterruptedException, java.io.IOException {
+		String which = (args.length > 0) ? args[0] : "all";
+		if(which.equals("all") || which.equals("hash")){
+			benchHashPolicy();
+		}
+		if(which.equals("all") || which.equals("concurrent")){
+			benchConcurrent();
+		}
+		if(which.equals("all") || which.equals("stamped")){
+			benchStamped();
+		}
+		if(which.equals("all") || which.equals("striped")){
+			benchStriped();
+		}
+		if(which.equals("all") || which.equals("cuckoo")){
+			benchCuckoo();
+		}
+		if(which.equals("all") || which.equals("segments")){
+			benchSegments();
+		}
+		if(which.equals("all") || which.equals("wide")){
+			benchWideTree(false);
+			benchWideTree(true);
+		}
+		if(which.equals("all") || which.equals("mapped")){
+			benchMapped(2_000_000, 4);
+		}
+		if(which.equals("all") || which.equals("ktree")){
+			int[] sizes = {1_000_000, 10_000_000, 50_000_000};
+			if(args.length > 1){
+				sizes = new int[args.length - 1];
+				for(int i = 1; i < args.length; i++){
+					sizes[i - 1] = Integer.parseInt(args[i]);
+				}
+			}
+			benchKTreeLoad(sizes, 2);
+		}
+		if(blackhole == 42){
+			System.out.println();
+		}
+	}
+}
@@ -0,0 +1,413 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * thread-safe hash table with the same put/get/remove API as ThreeTenHashTable.
+ * The keys are split over a fixed number of segments. Each segment is an
+ * open-addressing table (linear probing, power-of-two capacity) guarded by its own lock.
+ * - get() never locks: it reads the segment's current array and probes it.
+ * - put()/remove() lock only the segment the key hashes to.
+ * - a segment grows by building the new array on the side under its lock and then
+ *   publishing it with one volatile write, so readers are never blocked by a resize.
+ * Entries are immutable; updating a value swaps in a new entry.
+ * @param <K> takes any types
+ * @param <V> takes any types
+ * @author Phat Tran
+ */
+public class ThreeTenConcurrentHashTable<K, V> {
+
+	/**
+	 * immutable key:value pair stored in a segment.
+	 * @param <K> takes any types
+	 * @param <V> takes any types
+	 */
+	private static final class Node<K, V> {
+
+		/**
+		 * key.
+		 */
+		private final K key;
+
+		/**
+		 * cached hash code of the key.
+		 */
+		private final int hash;
+
+		/**
+		 * value.
+		 */
+		private final V value;
+
+		/**
+		 * Constructors.
+		 * @param key takes key
+		 * @param hash hash code of key
+		 * @param value takes value
+		 */
+		private Node(K key, int hash, V value) {
+			this.key = key;
+			this.hash = hash;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * one independently locked part of the table.
+	 * @param <K> takes any types
+	 * @param <V> takes any types
+	 */
+	private static final class Segment<K, V> extends ReentrantLock {
+
+		/**
+		 * serialization id (ReentrantLock is Serializable).
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * current slot array, replaced as a whole on resize.
+		 */
+		private volatile AtomicReferenceArray<Node<K, V>> table;
+
+		/**
+		 * number of live entries, only written under the lock.
+		 */
+		private volatile int count;
+
+		/**
+		 * number of tombstones in table, only used under the lock.
+		 */
+		private int tombstones;
+
+		/**
+		 * Constructor.
+		 * @param cap initial capacity, a power of two
+		 */
+		private Segment(int cap) {
+			table = new AtomicReferenceArray<>(cap);
+		}
+	}
+
+	/**
+	 * marker left in a slot after a removal so probe chains stay intact.
+	 */
+	private static final Node<Object, Object> TOMBSTONE = new Node<>(null, 0, null);
+
+	/**
+	 * default number of segments.
+	 */
+	public static int defaultConcurrencyLevel = 16;
+
+	/**
+	 * the segments, indexed by the high bits of the spread hash.
+	 */
+	private final Segment<K, V>[] segments;
+
+	/**
+	 * how far the spread hash is shifted right to pick a segment.
+	 */
+	private final int segmentShift;
+
+	/**
+	 * Constructor.
+	 * @param initCapacity total initial capacity, spread over the segments
+	 * @param concurrencyLevel number of segments, rounded up to a power of two
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ThreeTenConcurrentHashTable(int initCapacity, int concurrencyLevel) {
+		int count = ThreeTenHashTable.nextPowerOfTwo(Math.max(concurrencyLevel, 1));
+		int perSegment = ThreeTenHashTable.nextPowerOfTwo(Math.max(initCapacity / count, 2));
+		segments = (Segment<K, V>[]) new Segment[count];
+		for(int i = 0; i < count; i++){
+			segments[i] = new Segment<K, V>(perSegment);
+		}
+		segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+	}
+
+	/**
+	 * Constructor.
+	 * uses ThreeTenHashTable.defaultTableLength per segment and defaultConcurrencyLevel segments.
+	 */
+	public ThreeTenConcurrentHashTable() {
+		this(ThreeTenHashTable.defaultTableLength * defaultConcurrencyLevel, defaultConcurrencyLevel);
+	}
+
+	/**
+	 * pick the segment for a spread hash.
+	 * O(1).
+	 * @param h spread hash code
+	 * @return segment owning the hash
+	 */
+	private Segment<K, V> segmentFor(int h) {
+		if(segmentShift == 32){//a single segment
+			return segments[0];
+		}
+		return segments[h >>> segmentShift];
+	}
+
+	/**
+	 * find the slot of a key in the given array.
+	 * O(1) on average.
+	 * @param table array to probe
+	 * @param key takes key
+	 * @param h spread hash code of key
+	 * @return slot of the key, -1 if absent
+	 */
+	private static <K, V> int findSlot(AtomicReferenceArray<Node<K, V>> table, Object key, int h) {
+		int mask = table.length() - 1;
+		int index = h & mask;
+		for(int probe = 0; probe <= mask; probe++){
+			Node<K, V> node = table.get(index);
+			if(node == null){//end of the probe chain
+				return -1;
+			}
+			if(node != TOMBSTONE && node.hash == h && node.key.equals(key)){
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * O(1).
+	 * keeps track numbers of elements in the table.
+	 * the value is a snapshot when other threads are writing.
+	 * @return the number of elements in the table
+	 */
+	public int size() {
+		int total = 0;
+		for(Segment<K, V> seg : segments){
+			total += seg.count;
+		}
+		return total;
+	}
+
+	/**
+	 * O(s) where s is the number of segments.
+	 * @return the total number of slots over all segments
+	 */
+	public int capacity() {
+		int total = 0;
+		for(Segment<K, V> seg : segments){
+			total += seg.table.length();
+		}
+		return total;
+	}
+
+	/**
+	 * Given a key, return the value it maps to from the table. Never locks.
+	 * Average case: O(1).
+	 * @param key takes key
+	 * @return value that maps the key, if key does not exist, return null
+	 */
+	public V get(K key) {
+		if(key == null){
+			return null;
+		}
+		int h = ThreeTenHashTable.spread(key.hashCode());
+		AtomicReferenceArray<Node<K, V>> table = segmentFor(h).table;
+		int index = findSlot(table, key, h);
+		if(index == -1){
+			return null;
+		}
+		Node<K, V> node = table.get(index);
+		if(node == null || node == TOMBSTONE || !node.key.equals(key)){//removed or replaced meanwhile
+			return null;
+		}
+		return node.value;
+	}
+
+	/**
+	 * Place value val at the location determined by key.
+	 * If the key already exists in the table, replace the mapping to be val.
+	 * Average case: O(1).
+	 * @param key takes key
+	 * @param val takes value
+	 * @return false w/o updating the table if either key or val is null; otherwise return true
+	 */
+	public boolean put(K key, V val) {
+		if(key == null || val == null){
+			return false;
+		}
+		insert(key, val, false);
+		return true;
+	}
+
+	/**
+	 * Map key to val only if key has no mapping yet, as one atomic step.
+	 * Average case: O(1).
+	 * @param key takes key
+	 * @param val takes value
+	 * @return the existing value of key, or null if val was added (or key/val is null)
+	 */
+	public V putIfAbsent(K key, V val) {
+		if(key == null || val == null){
+			return null;
+		}
+		return insert(key, val, true);
+	}
+
+	/**
+	 * shared body of put() and putIfAbsent().
+	 * @param key takes key
+	 * @param val takes value
+	 * @param onlyIfAbsent keep an existing mapping when true
+	 * @return the previous value, or null
+	 */
+	private V insert(K key, V val, boolean onlyIfAbsent) {
+		int h = ThreeTenHashTable.spread(key.hashCode());
+		Segment<K, V> seg = segmentFor(h);
+		seg.lock();
+		try{
+			AtomicReferenceArray<Node<K, V>> table = seg.table;
+			int mask = table.length() - 1;
+			int index = h & mask;
+			int free = -1;
+			for(int probe = 0; probe <= mask; probe++){
+				Node<K, V> node = table.get(index);
+				if(node == null){
+					if(free == -1){
+						free = index;
+					}
+					break;
+				}
+				if(node == TOMBSTONE){//remember the first reusable slot
+					if(free == -1){
+						free = index;
+					}
+				}
+				else if(node.hash == h && node.key.equals(key)){
+					if(!onlyIfAbsent){
+						table.set(index, new Node<K, V>(key, h, val));
+					}
+					return node.value;
+				}
+				index = (index + 1) & mask;
+			}
+			if(table.get(free) == TOMBSTONE){
+				seg.tombstones--;
+			}
+			table.set(free, new Node<K, V>(key, h, val));
+			seg.count = seg.count + 1;
+			if(seg.count + seg.tombstones >= 0.8 * table.length()){
+				resize(seg);
+			}
+			return null;
+		}
+		finally{
+			seg.unlock();
+		}
+	}
+
+	/**
+	 * Remove the given key (and associated value) from the table.
+	 * Average case: O(1).
+	 * @param key takes key
+	 * @return value removed, null if the key is not in the table
+	 */
+	public V remove(K key) {
+		if(key == null){
+			return null;
+		}
+		int h = ThreeTenHashTable.spread(key.hashCode());
+		Segment<K, V> seg = segmentFor(h);
+		seg.lock();
+		try{
+			AtomicReferenceArray<Node<K, V>> table = seg.table;
+			int index = findSlot(table, key, h);
+			if(index == -1){
+				return null;
+			}
+			V removal = table.get(index).value;
+			table.set(index, tombstone());
+			seg.count = seg.count - 1;
+			seg.tombstones++;
+			return removal;
+		}
+		finally{
+			seg.unlock();
+		}
+	}
+
+	/**
+	 * typed view of TOMBSTONE.
+	 * @return the shared tombstone node
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> Node<K, V> tombstone() {
+		return (Node<K, V>) TOMBSTONE;
+	}
+
+	/**
+	 * rebuild a segment's array without tombstones, doubling it if live entries need the room.
+	 * Must hold the segment lock. Readers keep using the old array until the new one is published.
+	 * O(n) where n is the capacity of the segment.
+	 * @param seg segment to resize
+	 */
+	private void resize(Segment<K, V> seg) {
+		AtomicReferenceArray<Node<K, V>> old = seg.table;
+		int newCap = old.length();
+		if(seg.count >= 0.4 * newCap){//grow, otherwise only drop tombstones
+			newCap *= 2;
+		}
+		AtomicReferenceArray<Node<K, V>> table = new AtomicReferenceArray<>(newCap);
+		int mask = newCap - 1;
+		for(int i = 0; i < old.length(); i++){
+			Node<K, V> node = old.get(i);
+			if(node == null || node == TOMBSTONE){
+				continue;
+			}
+			int index = node.hash & mask;
+			while(table.get(index) != null){
+				index = (index + 1) & mask;
+			}
+			table.set(index, node);
+		}
+		seg.tombstones = 0;
+		seg.table = table;//publish
+	}
+
+	//-------------------------------------------------------------
+	// TESTING CODE
+	//-------------------------------------------------------------
+
+	/**
+	 * for testing purposes.
+	 * @param args command line argument
+	 * @throws InterruptedException if interrupted while joining the writers
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		ThreeTenConcurrentHashTable<Integer, String> ht1 = new ThreeTenConcurrentHashTable<>(8, 4);
+
+		//init, put, get, remove
+		if(ht1.size() == 0 && ht1.put(1, "A") && ht1.put(2, "B") && ht1.get(1).equals("A")
+			&& ht1.put(1, "Z") && ht1.get(1).equals("Z") && ht1.size() == 2
+			&& ht1.remove(2).equals("B") && ht1.get(2) == null && ht1.size() == 1
+			&& ht1.putIfAbsent(1, "Y").equals("Z") && ht1.putIfAbsent(3, "C") == null){
+			System.out.println("Yay 1");
+		}
+
+		//four writers on disjoint keys while the segments grow
+		final ThreeTenConcurrentHashTable<Integer, Integer> ht2 = new ThreeTenConcurrentHashTable<>();
+		Thread[] writers = new Thread[4];
+		for(int t = 0; t < writers.length; t++){
+			final int base = t * 10000;
+			writers[t] = new Thread(() -> {
+				for(int i = 0; i < 10000; i++){
+					ht2.put(base + i, i);
+				}
+			});
+			writers[t].start();
+		}
+		for(Thread w : writers){
+			w.join();
+		}
+		boolean all = (ht2.size() == 40000);
+		for(int i = 0; i < 40000 && all; i++){
+			all = ht2.get(i) == i % 10000;
+		}
+		if(all){
+			System.out.println("Yay 2");
+		}
+	}
+}
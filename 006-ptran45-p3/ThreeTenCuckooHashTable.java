@@ -0,0 +1,555 @@
+/**
+ * hash table with the same put/get/remove/rehash API as ThreeTenHashTable,
+ * built on bucketized cuckoo hashing so a lookup reads a constant number of slots.
+ * - every key has two candidate buckets of BUCKET_SIZE slots, picked by two seeded hash functions.
+ * - put() evicts a random entry of a full bucket and moves it to its other bucket,
+ *   up to MAX_KICKS times; an entry still homeless after that (a cycle) goes to a small stash.
+ * - when the stash overflows, the table is rebuilt with new hash seeds (and doubled if needed).
+ * A lookup reads at most 2 * BUCKET_SIZE slots plus the stash.
+ * Keys whose hashCode() is identical cannot be told apart by any seed; they end up in the stash.
+ * @param <K> takes any types
+ * @param <V> takes any types
+ * @author Phat Tran
+ */
+public class ThreeTenCuckooHashTable<K, V> {
+
+	/**
+	 * number of slots in one bucket.
+	 */
+	public static final int BUCKET_SIZE = 4;
+
+	/**
+	 * longest eviction walk before the homeless entry is stashed.
+	 */
+	private static final int MAX_KICKS = 256;
+
+	/**
+	 * stash entries allowed before the table is rebuilt.
+	 */
+	private static final int STASH_SIZE = 4;
+
+	/**
+	 * keys of the table, null means empty slot. Slots b*BUCKET_SIZE .. b*BUCKET_SIZE+BUCKET_SIZE-1 form bucket b.
+	 */
+	private K[] keys;
+
+	/**
+	 * values of the table, values[i] belongs to keys[i].
+	 */
+	private V[] values;
+
+	/**
+	 * cached hashCode() of keys[i].
+	 */
+	private int[] hashes;
+
+	/**
+	 * number of buckets - 1, the number of buckets is a power of two.
+	 */
+	private int bucketMask;
+
+	/**
+	 * keys that found no slot in either bucket.
+	 */
+	private K[] stashKeys;
+
+	/**
+	 * values of the stashed keys.
+	 */
+	private V[] stashValues;
+
+	/**
+	 * cached hash codes of the stashed keys.
+	 */
+	private int[] stashHashes;
+
+	/**
+	 * number of stashed entries.
+	 */
+	private int stashCount;
+
+	/**
+	 * stash entries allowed before the next rebuild, raised when a rebuild cannot empty the stash.
+	 */
+	private int stashLimit;
+
+	/**
+	 * keep track of size (number of elements in table and stash).
+	 */
+	private int size;
+
+	/**
+	 * seed mixed into both bucket hash functions, changed on every rebuild.
+	 */
+	private int seed;
+
+	/**
+	 * xorshift state used to pick eviction victims.
+	 */
+	private int random = 0x2545F491;
+
+	/**
+	 * Constructor.
+	 * Create a hash table where the initial storage
+	 * has a capacity of initCapacity, rounded up to a power of two of at least BUCKET_SIZE.
+	 * @param initCapacity user's capacity
+	 */
+	public ThreeTenCuckooHashTable(int initCapacity) {
+		allocate(roundCapacity(initCapacity));
+	}
+
+	/**
+	 * Constructor.
+	 * Create a hash table where the initial storage
+	 * has a capacity of ThreeTenHashTable.defaultTableLength, rounded up.
+	 */
+	public ThreeTenCuckooHashTable() {
+		this(ThreeTenHashTable.defaultTableLength);
+	}
+
+	/**
+	 * round a requested capacity to a valid one.
+	 * @param cap requested capacity
+	 * @return power of two of at least BUCKET_SIZE
+	 */
+	private static int roundCapacity(int cap) {
+		return Math.max(BUCKET_SIZE, ThreeTenHashTable.nextPowerOfTwo(cap));
+	}
+
+	/**
+	 * replace table and stash with empty arrays.
+	 * @param cap number of slots, a power of two of at least BUCKET_SIZE
+	 */
+	@SuppressWarnings("unchecked")
+	private void allocate(int cap) {
+		keys = (K[]) new Object[cap];
+		values = (V[]) new Object[cap];
+		hashes = new int[cap];
+		bucketMask = cap / BUCKET_SIZE - 1;
+		stashKeys = (K[]) new Object[STASH_SIZE];
+		stashValues = (V[]) new Object[STASH_SIZE];
+		stashHashes = new int[STASH_SIZE];
+		stashCount = 0;
+		stashLimit = STASH_SIZE;
+		size = 0;
+	}
+
+	/**
+	 * O(1).
+	 * keep tracks the capacity of array.
+	 * @return the number of slots in the table, not counting the stash
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * O(1).
+	 * keeps track numbers of elements in the table.
+	 * @return the number of elements in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * O(1).
+	 * @return number of entries currently in the stash
+	 */
+	public int stashSize() {
+		return stashCount;
+	}
+
+	/**
+	 * first slot of the first candidate bucket of a hash code.
+	 * O(1).
+	 * @param h hash code of the key
+	 * @return index of the bucket's first slot
+	 */
+	private int bucket1(int h) {
+		return (ThreeTenHashTable.spread(h ^ seed) & bucketMask) * BUCKET_SIZE;
+	}
+
+	/**
+	 * first slot of the second candidate bucket of a hash code.
+	 * O(1).
+	 * @param h hash code of the key
+	 * @return index of the bucket's first slot
+	 */
+	private int bucket2(int h) {
+		return (ThreeTenHashTable.spread(Integer.rotateLeft(h, 16) ^ ~seed) & bucketMask) * BUCKET_SIZE;
+	}
+
+	/**
+	 * look for a key in one bucket.
+	 * O(BUCKET_SIZE).
+	 * @param start first slot of the bucket
+	 * @param key takes key
+	 * @param h hash code of key
+	 * @return slot of the key, -1 if not in the bucket
+	 */
+	private int findInBucket(int start, Object key, int h) {
+		for(int i = start; i < start + BUCKET_SIZE; i++){
+			if(keys[i] != null && hashes[i] == h && keys[i].equals(key)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * find the slot that holds the given key in the table.
+	 * O(1): reads the two candidate buckets only.
+	 * @param key takes key
+	 * @param h hash code of key
+	 * @return slot of the key, -1 if the key is not in the table
+	 */
+	private int findSlot(Object key, int h) {
+		int index = findInBucket(bucket1(h), key, h);
+		if(index == -1){
+			index = findInBucket(bucket2(h), key, h);
+		}
+		return index;
+	}
+
+	/**
+	 * find the stash position of a key.
+	 * O(s) where s is the stash size.
+	 * @param key takes key
+	 * @param h hash code of key
+	 * @return position in the stash, -1 if the key is not stashed
+	 */
+	private int findStash(Object key, int h) {
+		for(int i = 0; i < stashCount; i++){
+			if(stashHashes[i] == h && stashKeys[i].equals(key)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * find an empty slot in one bucket.
+	 * O(BUCKET_SIZE).
+	 * @param start first slot of the bucket
+	 * @return an empty slot, -1 if the bucket is full
+	 */
+	private int freeInBucket(int start) {
+		for(int i = start; i < start + BUCKET_SIZE; i++){
+			if(keys[i] == null){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * next value of the xorshift generator.
+	 * @return a pseudo-random int
+	 */
+	private int nextRandom() {
+		random ^= random << 13;
+		random ^= random >>> 17;
+		random ^= random << 5;
+		return random;
+	}
+
+	/**
+	 * place a key that is not in the table yet.
+	 * Uses a free slot of either bucket, otherwise evicts random victims along a cuckoo path.
+	 * If the path is longer than MAX_KICKS, the entry left without a slot goes to the stash.
+	 * Average case: O(1).
+	 * @param key takes key
+	 * @param val takes value
+	 * @param h hash code of key
+	 */
+	private void place(K key, V val, int h) {
+		int b1 = bucket1(h);
+		int index = freeInBucket(b1);
+		if(index == -1){
+			index = freeInBucket(bucket2(h));
+		}
+		int bucket = b1;
+		for(int kick = 0; index == -1 && kick < MAX_KICKS; kick++){//cuckoo path
+			int victim = bucket + ((nextRandom() >>> 1) % BUCKET_SIZE);
+			K k = keys[victim];
+			V v = values[victim];
+			int vh = hashes[victim];
+			keys[victim] = key;
+			values[victim] = val;
+			hashes[victim] = h;
+			key = k;
+			val = v;
+			h = vh;
+			bucket = (bucket1(h) == bucket) ? bucket2(h) : bucket1(h);//the victim's other bucket
+			index = freeInBucket(bucket);
+		}
+		if(index == -1){//probably a cycle
+			stash(key, val, h);
+			return;
+		}
+		keys[index] = key;
+		values[index] = val;
+		hashes[index] = h;
+	}
+
+	/**
+	 * append an entry to the stash, growing it if needed.
+	 * O(1) amortized.
+	 * @param key takes key
+	 * @param val takes value
+	 * @param h hash code of key
+	 */
+	private void stash(K key, V val, int h) {
+		if(stashCount == stashKeys.length){
+			stashKeys = java.util.Arrays.copyOf(stashKeys, stashCount * 2);
+			stashValues = java.util.Arrays.copyOf(stashValues, stashCount * 2);
+			stashHashes = java.util.Arrays.copyOf(stashHashes, stashCount * 2);
+		}
+		stashKeys[stashCount] = key;
+		stashValues[stashCount] = val;
+		stashHashes[stashCount] = h;
+		stashCount++;
+	}
+
+	/**
+	 * take an entry out of the stash, moving the last one into its place.
+	 * O(1).
+	 * @param i position in the stash
+	 */
+	private void unstash(int i) {
+		stashCount--;
+		stashKeys[i] = stashKeys[stashCount];
+		stashValues[i] = stashValues[stashCount];
+		stashHashes[i] = stashHashes[stashCount];
+		stashKeys[stashCount] = null;
+		stashValues[stashCount] = null;
+	}
+
+	/**
+	 * Given a key, return the value it maps to from the table.
+	 * O(1): at most 2 * BUCKET_SIZE slots and the stash are read.
+	 * @param key takes key
+	 * @return value that maps the key, if key does not exist, return null
+	 */
+	public V get(K key) {
+		if(key == null){
+			return null;
+		}
+		int h = key.hashCode();
+		int index = findSlot(key, h);
+		if(index != -1){
+			return values[index];
+		}
+		index = findStash(key, h);
+		if(index != -1){
+			return stashValues[index];
+		}
+		return null;
+	}
+
+	/**
+	 * Place value val at the location determined by key.
+	 * If the key already exists in the table, replace the mapping to be val.
+	 * If after the addition, load of table >= 0.8, rehash to twice the current capacity.
+	 * If the stash overflows, the table is rebuilt with new hash seeds.
+	 * Average case: O(1).
+	 * @param key takes key
+	 * @param val takes value
+	 * @return false w/o updating the table if either key or val is null; otherwise return true
+	 */
+	public boolean put(K key, V val) {
+		if(key == null || val == null){
+			return false;
+		}
+		int h = key.hashCode();
+		int index = findSlot(key, h);
+		if(index != -1){//replace the mapping
+			values[index] = val;
+			return true;
+		}
+		index = findStash(key, h);
+		if(index != -1){
+			stashValues[index] = val;
+			return true;
+		}
+		place(key, val, h);
+		size++;
+		if((double)size / capacity() >= 0.8){//rehash the table
+			rebuild(capacity() * 2);
+		}
+		else if(stashCount > stashLimit){//cuckoo cycles, try new hash functions
+			rebuild((size >= 0.5 * capacity()) ? capacity() * 2 : capacity());
+		}
+		return true;
+	}
+
+	/**
+	 * Remove the given key (and associated value) from the table.
+	 * The freed slot is offered to the stashed entries.
+	 * Average case: O(1).
+	 * @param key takes key
+	 * @return value removed, null if the key is not in the table
+	 */
+	public V remove(K key) {
+		if(key == null){
+			return null;
+		}
+		int h = key.hashCode();
+		int index = findSlot(key, h);
+		if(index != -1){
+			V removal = values[index];
+			keys[index] = null;
+			values[index] = null;
+			size--;
+			for(int i = 0; i < stashCount; i++){//move a stashed entry into the hole
+				int sh = stashHashes[i];
+				int bucket = index - index % BUCKET_SIZE;
+				if(bucket1(sh) == bucket || bucket2(sh) == bucket){
+					keys[index] = stashKeys[i];
+					values[index] = stashValues[i];
+					hashes[index] = sh;
+					unstash(i);
+					break;
+				}
+			}
+			return removal;
+		}
+		index = findStash(key, h);
+		if(index != -1){
+			V removal = stashValues[index];
+			unstash(index);
+			size--;
+			return removal;
+		}
+		return null;
+	}
+
+	/**
+	 * Increase or decrease the capacity of the storage to be newCap.
+	 * newCap is rounded up to a power of two of at least BUCKET_SIZE.
+	 * If the new capacity will make the load to be at or above 0.8, do not rehash and return false.
+	 * @param newCap new capacity of the storage array
+	 * @return true if rehash successfully, otherwise, false
+	 */
+	public boolean rehash(int newCap) {
+		if(newCap <= 0){
+			return false;
+		}
+		newCap = roundCapacity(newCap);
+		if((double)size / newCap >= 0.8){
+			return false;
+		}
+		rebuild(newCap);
+		return true;
+	}
+
+	/**
+	 * move every entry into a new table of the given capacity with new hash seeds.
+	 * Tries a few seeds if entries keep landing in the stash; if none helps
+	 * (e.g. many keys share one hashCode()), the stash limit is raised instead.
+	 * O(n) where n is the number of entries.
+	 * @param newCap number of slots, a power of two of at least BUCKET_SIZE
+	 */
+	private void rebuild(int newCap) {
+		K[] oldKeys = keys;
+		V[] oldValues = values;
+		int[] oldHashes = hashes;
+		K[] oldStashKeys = stashKeys;
+		V[] oldStashValues = stashValues;
+		int[] oldStashHashes = stashHashes;
+		int oldStashCount = stashCount;
+		int count = size;
+		for(int attempt = 0; attempt < 3; attempt++){
+			seed = nextRandom();
+			allocate(newCap);
+			for(int i = 0; i < oldKeys.length; i++){
+				if(oldKeys[i] != null){
+					place(oldKeys[i], oldValues[i], oldHashes[i]);
+				}
+			}
+			for(int i = 0; i < oldStashCount; i++){
+				place(oldStashKeys[i], oldStashValues[i], oldStashHashes[i]);
+			}
+			size = count;
+			if(stashCount <= STASH_SIZE){
+				return;
+			}
+		}
+		stashLimit = stashCount * 2;//keys the hash functions cannot separate
+	}
+
+	/**
+	 * toString().
+	 * for testing purposes.
+	 * @return String contains elements in the table followed by the stash
+	 */
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] != null) {
+				s.append(keys[i] + ":" + values[i] + "\n");
+			}
+		}
+		for(int i = 0; i < stashCount; i++) {
+			s.append(stashKeys[i] + ":" + stashValues[i] + "\n");
+		}
+		return s.toString().trim();
+	}
+
+	//-------------------------------------------------------------
+	// TESTING CODE
+	//-------------------------------------------------------------
+
+	/**
+	 * for testing purposes.
+	 * @param args command line argument
+	 */
+	public static void main(String[] args) {
+		ThreeTenCuckooHashTable<Integer, String> ht1 = new ThreeTenCuckooHashTable<>(5);
+
+		//init, put, get, remove
+		if(ht1.capacity() == 8 && ht1.size() == 0 && ht1.put(1, "A") && ht1.put(2, "B")
+			&& ht1.get(1).equals("A") && ht1.put(1, "Z") && ht1.get(1).equals("Z") && ht1.size() == 2
+			&& ht1.remove(2).equals("B") && ht1.get(2) == null && ht1.remove(2) == null
+			&& !ht1.put(null, "C") && ht1.size() == 1) {
+			System.out.println("Yay 1");
+		}
+
+		//growth and removal with many keys
+		ThreeTenCuckooHashTable<Integer, Integer> ht2 = new ThreeTenCuckooHashTable<>();
+		for(int i = 0; i < 10000; i++){
+			ht2.put(i, i);
+		}
+		for(int i = 0; i < 10000; i += 2){
+			ht2.remove(i);
+		}
+		boolean all = ht2.size() == 5000 && ht2.capacity() == 16384 && !ht2.rehash(4096) && ht2.rehash(8192);
+		for(int i = 0; i < 10000 && all; i++){
+			all = (i % 2 == 0) ? ht2.get(i) == null : ht2.get(i) == i;
+		}
+		if(all) {
+			System.out.println("Yay 2");
+		}
+
+		//"Aa" and "BB" share a hashCode, so these 16 keys all collide and overflow into the stash
+		ThreeTenCuckooHashTable<String, Integer> ht3 = new ThreeTenCuckooHashTable<>(8);
+		String[] same = new String[16];
+		for(int i = 0; i < 16; i++){
+			StringBuilder s = new StringBuilder();
+			for(int bit = 0; bit < 4; bit++){
+				s.append(((i >> bit) & 1) == 0 ? "Aa" : "BB");
+			}
+			same[i] = s.toString();
+			ht3.put(same[i], i);
+		}
+		all = ht3.size() == 16 && ht3.stashSize() >= 8;
+		for(int i = 0; i < 16 && all; i++){
+			all = ht3.get(same[i]) == i;
+		}
+		if(all && ht3.remove(same[3]) == 3 && ht3.get(same[3]) == null && ht3.size() == 15
+			&& ht3.stashSize() >= 7) {
+			System.out.println("Yay 3");
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * probe and occupancy statistics for ThreeTenHashTable.
+ * Probe counters and rehash timings are collected while the table runs;
+ * slot counts and the longest cluster are filled in by ThreeTenHashTable.getStats().
+ * @author Phat Tran
+ */
+public class ThreeTenHashStats {
+
+	/**
+	 * probe lengths at or above this share the last histogram bucket.
+	 */
+	public static final int MAX_PROBE_BUCKET = 32;
+
+	/**
+	 * hitHistogram[p] counts successful lookups that looked at p slots.
+	 */
+	private final long[] hitHistogram = new long[MAX_PROBE_BUCKET + 1];
+
+	/**
+	 * missHistogram[p] counts failed lookups that looked at p slots.
+	 */
+	private final long[] missHistogram = new long[MAX_PROBE_BUCKET + 1];
+
+	/**
+	 * number of rehashes (including incremental resizes) so far.
+	 */
+	private long rehashCount;
+
+	/**
+	 * total time spent rehashing, in nanoseconds.
+	 */
+	private long rehashNanos;
+
+	/**
+	 * live slots at the last getStats().
+	 */
+	private int live;
+
+	/**
+	 * tombstone slots at the last getStats().
+	 */
+	private int tombstones;
+
+	/**
+	 * empty slots at the last getStats().
+	 */
+	private int empty;
+
+	/**
+	 * longest run of non-empty slots at the last getStats().
+	 */
+	private int longestCluster;
+
+	/**
+	 * record the probe length of one lookup.
+	 * O(1).
+	 * @param hit whether the key was found
+	 * @param probes number of slots looked at
+	 */
+	void recordProbe(boolean hit, int probes) {
+		int bucket = Math.min(probes, MAX_PROBE_BUCKET);
+		if(hit){
+			hitHistogram[bucket]++;
+		}
+		else{
+			missHistogram[bucket]++;
+		}
+	}
+
+	/**
+	 * record one rehash.
+	 * O(1).
+	 * @param nanos time it took
+	 */
+	void recordRehash(long nanos) {
+		rehashCount++;
+		rehashNanos += nanos;
+	}
+
+	/**
+	 * add time spent moving entries during an incremental resize.
+	 * O(1).
+	 * @param nanos time it took
+	 */
+	void recordMigration(long nanos) {
+		rehashNanos += nanos;
+	}
+
+	/**
+	 * store the slot counts computed by the table.
+	 * @param live live slots
+	 * @param tombstones tombstone slots
+	 * @param empty empty slots
+	 * @param longestCluster longest run of non-empty slots
+	 */
+	void setOccupancy(int live, int tombstones, int empty, int longestCluster) {
+		this.live = live;
+		this.tombstones = tombstones;
+		this.empty = empty;
+		this.longestCluster = longestCluster;
+	}
+
+	/**
+	 * clear the probe and rehash counters.
+	 */
+	public void reset() {
+		java.util.Arrays.fill(hitHistogram, 0);
+		java.util.Arrays.fill(missHistogram, 0);
+		rehashCount = 0;
+		rehashNanos = 0;
+	}
+
+	/**
+	 * getter.
+	 * @return copy of the probe-length histogram of successful lookups
+	 */
+	public long[] hitHistogram() {
+		return hitHistogram.clone();
+	}
+
+	/**
+	 * getter.
+	 * @return copy of the probe-length histogram of failed lookups
+	 */
+	public long[] missHistogram() {
+		return missHistogram.clone();
+	}
+
+	/**
+	 * getter.
+	 * @return number of rehashes so far
+	 */
+	public long rehashCount() {
+		return rehashCount;
+	}
+
+	/**
+	 * getter.
+	 * @return total time spent rehashing, in nanoseconds
+	 */
+	public long rehashNanos() {
+		return rehashNanos;
+	}
+
+	/**
+	 * getter.
+	 * @return live slots at the last getStats()
+	 */
+	public int liveSlots() {
+		return live;
+	}
+
+	/**
+	 * getter.
+	 * @return tombstone slots at the last getStats()
+	 */
+	public int tombstoneSlots() {
+		return tombstones;
+	}
+
+	/**
+	 * getter.
+	 * @return empty slots at the last getStats()
+	 */
+	public int emptySlots() {
+		return empty;
+	}
+
+	/**
+	 * getter.
+	 * @return longest run of non-empty slots at the last getStats()
+	 */
+	public int longestCluster() {
+		return longestCluster;
+	}
+
+	/**
+	 * average probe length of one histogram.
+	 * @param histogram hit or miss histogram
+	 * @return average number of slots looked at, 0 if empty
+	 */
+	private static double average(long[] histogram) {
+		long count = 0;
+		long total = 0;
+		for(int i = 0; i < histogram.length; i++){
+			count += histogram[i];
+			total += histogram[i] * i;
+		}
+		return (count == 0) ? 0.0 : (double)total / count;
+	}
+
+	/**
+	 * append the non-zero buckets of one histogram.
+	 * @param s builder to append to
+	 * @param histogram hit or miss histogram
+	 */
+	private static void appendHistogram(StringBuilder s, long[] histogram) {
+		for(int i = 0; i < histogram.length; i++){
+			if(histogram[i] != 0){
+				s.append(" ").append(i).append(i == MAX_PROBE_BUCKET ? "+" : "").append(":").append(histogram[i]);
+			}
+		}
+	}
+
+	/**
+	 * toString().
+	 * @return a multi-line report of all statistics
+	 */
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		s.append("slots: live=" + live + " tombstone=" + tombstones + " empty=" + empty
+			+ " longestCluster=" + longestCluster + "\n");
+		s.append("rehash: count=" + rehashCount + " ms=" + (rehashNanos / 1_000_000.0) + "\n");
+		s.append(String.format("hit probes (avg %.2f):", average(hitHistogram)));
+		appendHistogram(s, hitHistogram);
+		s.append(String.format("%nmiss probes (avg %.2f):", average(missHistogram)));
+		appendHistogram(s, missHistogram);
+		return s.toString();
+	}
+}
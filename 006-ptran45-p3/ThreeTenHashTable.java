@@ -126,6 +126,117 @@ public class ThreeTenHashTable<K, V> {
 	 * tombStone for removed value.
 	 */
 	private TableEntry<K,V> tombStone; 
+
+	/**
+	 * cached hashCode() of the key in the same slot of storage.
+	 * probes compare these before calling equals() and never recompute a stored key's hash.
+	 */
+	private int[] hashes;
+
+	/**
+	 * whether the table uses Robin Hood probing with backward shift deletion.
+	 * in this mode the table never holds tombstones.
+	 */
+	private boolean robinHood;
+
+	/**
+	 * whether growing the table moves the entries a few buckets at a time.
+	 */
+	private boolean incremental;
+
+	/**
+	 * whether capacities are kept at powers of two so slots come from a bit mask.
+	 */
+	private boolean powerOfTwo;
+
+	/**
+	 * table being drained into storage during an incremental resize, null otherwise.
+	 */
+	private TableEntry<K,V>[] oldStorage;
+
+	/**
+	 * cached hash codes for oldStorage.
+	 */
+	private int[] oldHashes;
+
+	/**
+	 * next slot of oldStorage to move into storage.
+	 */
+	private int migrateIndex;
+
+	/**
+	 * number of oldStorage slots every put/get/remove moves during an incremental resize.
+	 * the new table is twice as big, so it cannot fill up before the old one is drained.
+	 */
+	private static final int MIGRATE_STEP = 4;
+
+	/**
+	 * number of tombstones currently in storage.
+	 */
+	private int tombstones;
+
+	/**
+	 * capacity given at construction; automatic shrinking never goes below it.
+	 */
+	private int minCapacity;
+
+	/**
+	 * after a removal, the table halves its capacity when size / capacity drops below this.
+	 * 0 turns shrinking off.
+	 */
+	private double shrinkLoad = 0.1;
+
+	/**
+	 * after a removal, the table is rebuilt at the same capacity when
+	 * tombstones / capacity goes above this. 1 turns the cleanup off.
+	 */
+	private double tombstoneLimit = 0.25;
+
+	/**
+	 * probe and rehash counters, null when statistics are off.
+	 */
+	private ThreeTenHashStats stats;
+
+	/**
+	 * slots looked at by the last findSlot(), so a lookup that also searches
+	 * oldStorage is recorded in stats once.
+	 */
+	private int lastProbes;
+
+	/**
+	 * largest capacity the table may grow to, 0 when unbounded.
+	 */
+	private int maxCapacity;
+
+	/**
+	 * CLOCK reference bit of the entry in the same slot of storage, null when unbounded.
+	 */
+	private boolean[] refBits;
+
+	/**
+	 * next slot the CLOCK hand looks at when an entry has to be evicted.
+	 */
+	private int clockHand;
+
+	/**
+	 * number of get() calls that found their key.
+	 */
+	private long hits;
+
+	/**
+	 * number of get() calls that did not find their key.
+	 */
+	private long misses;
+
+	/**
+	 * number of entries evicted in bounded mode.
+	 */
+	private long evictions;
+
+	/**
+	 * called with every evicted key and value, may be null.
+	 */
+	private java.util.function.BiConsumer<? super K, ? super V> evictionListener;
 	
 
 	/**
@@ -138,8 +249,10 @@ public class ThreeTenHashTable<K, V> {
 	@SuppressWarnings("unchecked")
 	public ThreeTenHashTable(int initCapacity) {
 		storage = (TableEntry<K,V>[]) new TableEntry[initCapacity];
+		hashes = new int[initCapacity];
 		size = 0;
 		tombStone = new TableEntry<K,V>(null, null);
+		minCapacity = initCapacity;
 	}
 
 	/**
@@ -151,8 +264,10 @@ public class ThreeTenHashTable<K, V> {
 	@SuppressWarnings("unchecked")
 	public ThreeTenHashTable() {
 		storage = (TableEntry<K,V>[]) new TableEntry[defaultTableLength];
+		hashes = new int[defaultTableLength];
 		size = 0;
 		tombStone = new TableEntry<K,V>(null, null);
+		minCapacity = defaultTableLength;
 	}
 
 	/**
@@ -174,6 +289,155 @@ public class ThreeTenHashTable<K, V> {
 		return size;
 	}
 		
+	/**
+	 * compute the slot where probing for a key starts.
+	 * By default this is the absolute value of hashCode() modulo the table length.
+	 * With power-of-two capacities the hash is spread first and masked instead,
+	 * which avoids the division and keeps weak hash codes from clustering.
+	 * O(1).
+	 * @param h hash code of the key
+	 * @param cap length of the table being probed
+	 * @return home slot of the key
+	 */
+	private int homeSlot(int h, int cap) {
+		if(powerOfTwo){
+			return spread(h) & (cap - 1);
+		}
+		return Math.abs(h % cap);//same slot as abs(h) % cap, but safe for Integer.MIN_VALUE
+	}
+
+	/**
+	 * mix all bits of a hash code into the low bits (murmur3 finalizer).
+	 * O(1).
+	 * @param h hash code
+	 * @return spread hash code
+	 */
+	static int spread(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * round a capacity up to the next power of two.
+	 * O(1).
+	 * @param cap requested capacity
+	 * @return smallest power of two that is >= cap (at least 2)
+	 */
+	static int nextPowerOfTwo(int cap) {
+		if(cap <= 2){
+			return 2;
+		}
+		return Integer.highestOneBit(cap - 1) << 1;
+	}
+
+	/**
+	 * find the slot that holds the given key.
+	 * Probing starts at the home slot, wraps around at the end of the array
+	 * and stops at the first empty (null) slot. Tombstones are skipped.
+	 * In Robin Hood mode the search also stops at the first entry that is
+	 * closer to its home slot than the key would be.
+	 * The number of slots looked at is left in lastProbes; the caller records it.
+	 * Worst case: O(n) where n is the capacity of the table, Average case: O(1).
+	 * @param table table to search, storage or oldStorage
+	 * @param tableHashes cached hash codes of table
+	 * @param key takes key
+	 * @param h hash code of key
+	 * @return index of the key, -1 if the key is not in the table
+	 */
+	private int findSlot(TableEntry<K,V>[] table, int[] tableHashes, K key, int h) {
+		int cap = table.length;
+		int index = homeSlot(h, cap);
+		for(int probe = 0; probe < cap; probe++){
+			if(table[index] == null){//end of the probe chain
+				lastProbes = probe + 1;
+				return -1;
+			}
+			if(table[index] != tombStone){
+				if(robinHood && displacement(tableHashes, index) < probe){//key would have been placed before here
+					lastProbes = probe + 1;
+					return -1;
+				}
+				if(tableHashes[index] == h && (table[index].key).equals(key)){
+					lastProbes = probe + 1;
+					return index;
+				}
+			}
+			index++;
+			if(index == cap){//wrap around
+				index = 0;
+			}
+		}
+		lastProbes = cap;
+		return -1;
+	}
+
+	/**
+	 * report how far the entry at index sits from its home slot.
+	 * O(1).
+	 * @param tableHashes cached hash codes of the table holding the entry
+	 * @param index slot of a non-null, non-tombstone entry
+	 * @return number of slots between the home slot and index
+	 */
+	private int displacement(int[] tableHashes, int index) {
+		int home = homeSlot(tableHashes[index], tableHashes.length);
+		if(index >= home){
+			return index - home;
+		}
+		return index + tableHashes.length - home;//probe wrapped around
+	}
+
+	/**
+	 * place an entry into the first free slot of its probe chain in the given table.
+	 * In Robin Hood mode an entry that is closer to its home slot gives up its slot
+	 * to the one being placed, which then carries on with the displaced entry.
+	 * the table must not contain the key already and must have a free slot.
+	 * O(1) on average.
+	 * @param table table to put the entry in
+	 * @param tableHashes cached hash codes of table
+	 * @param tableRefs reference bits of table, null when unbounded
+	 * @param entry the entry to place
+	 * @param h hash code of the entry's key
+	 * @param ref reference bit of the entry
+	 */
+	private void placeEntry(TableEntry<K,V>[] table, int[] tableHashes, boolean[] tableRefs,
+		TableEntry<K,V> entry, int h, boolean ref) {
+		int index = homeSlot(h, table.length);
+		int dist = 0;
+		while(table[index] != null){//linear probing with wrap-around
+			if(robinHood){
+				int other = displacement(tableHashes, index);
+				if(other < dist){//take from the rich, keep probing with the evicted entry
+					TableEntry<K,V> temp = table[index];
+					int tempHash = tableHashes[index];
+					table[index] = entry;
+					tableHashes[index] = h;
+					entry = temp;
+					h = tempHash;
+					if(tableRefs != null){
+						boolean tempRef = tableRefs[index];
+						tableRefs[index] = ref;
+						ref = tempRef;
+					}
+					dist = other;
+				}
+			}
+			index++;
+			dist++;
+			if(index == table.length){
+				index = 0;
+			}
+		}
+		table[index] = entry;
+		tableHashes[index] = h;
+		if(tableRefs != null){
+			tableRefs[index] = ref;
+		}
+	}
+
 	/**
 	 * Place value val at the location determined by key.
 	 * Use linear probing for collisions.
@@ -183,6 +447,9 @@ public class ThreeTenHashTable<K, V> {
 	 * If the key already exists in the table, replace the mapping to be val (i.e. no duplicate keys in hash table).
 	 * If the key isn't in the table, add key:val in table.
 	 * If after the addition, load of table >= 0.8, rehash to ensure the table is expanded to twice the current capacity.
+	 * Probing wraps around and stops at the first null slot; the first tombstone seen on the way is reused.
+	 * In incremental mode the expansion only allocates the new array; entries move over in later calls.
+	 * In bounded mode the table stops growing at its maximum capacity and evicts an entry instead.
 	 * Worst case: O(n) where n is the number of items in table, Average case: O(1).
 	 * @param key takes key
 	 * @param val takes value
@@ -192,27 +459,99 @@ public class ThreeTenHashTable<K, V> {
 		if(key == null || val == null){
 			return false;
 		}
-		TableEntry<K,V> pair = new TableEntry<K,V>(key, val);
-		int index = Math.abs(key.hashCode()) % capacity();
-		double load = 0.0;
-		int newCap = capacity() * 2;
-
-		//use for linear probing
-		for(int i = index; i < capacity(); i++){
-			if((storage[i] == null) || (isTombstone(i))){//put pair into array
-				storage[i] = pair;
-				size++;
-				load = (double)size / capacity();
-				if(load >= 0.8){//rehash the table
-					rehash(newCap);
+		migrateSome();
+		int h = key.hashCode();
+		int cap = capacity();
+		int free = -1;
+		int probes;//recorded once the key is known to be new or found in oldStorage
+		if(robinHood){
+			int found = findSlot(storage, hashes, key, h);
+			probes = lastProbes;
+			if(found != -1){//means key is already in the table
+				if(stats != null){
+					stats.recordProbe(true, probes);
 				}
-				break;
+				storage[found].value = val;
+				return true;
 			}
-			else{//means something is already at this index
-				if((storage[i].key).equals(key)){
-					storage[i].value = val;
+		}
+		else{
+			int index = homeSlot(h, cap);
+
+			//use for linear probing
+			int probe = 0;
+			for(; probe < cap; probe++){
+				if(storage[index] == null){//end of the probe chain, key is not in the table
+					if(free == -1){
+						free = index;
+					}
+					probe++;
 					break;
 				}
+				if(storage[index] == tombStone){//remember the first reusable slot
+					if(free == -1){
+						free = index;
+					}
+				}
+				else if(hashes[index] == h && (storage[index].key).equals(key)){//means key is already in the table
+					storage[index].value = val;
+					if(stats != null){
+						stats.recordProbe(true, probe + 1);
+					}
+					return true;
+				}
+				index++;
+				if(index == cap){//wrap around
+					index = 0;
+				}
+			}
+			probes = probe;
+		}
+		boolean hit = false;
+		if(oldStorage != null){//key may not have been migrated yet
+			int old = findSlot(oldStorage, oldHashes, key, h);
+			probes += lastProbes;
+			if(old != -1){
+				oldStorage[old] = tombStone;
+				size--;
+				hit = true;
+			}
+		}
+		if(stats != null){
+			stats.recordProbe(hit, probes);
+		}
+		boolean evicted = false;
+		//full cache: not even growing to maxCapacity would keep the load under 0.8
+		if(maxCapacity > 0 && (double)(size + 1) / Math.max(cap, maxCapacity) >= 0.8){
+			evictOne();
+			evicted = true;
+		}
+		if(robinHood){
+			placeEntry(storage, hashes, refBits, new TableEntry<K,V>(key, val), h, false);
+		}
+		else{
+			if(storage[free] == tombStone){
+				tombstones--;
+			}
+			storage[free] = new TableEntry<K,V>(key, val);
+			hashes[free] = h;
+		}
+		size++;
+		if(evicted){
+			compact();
+			return true;
+		}
+		double load = (double)size / cap;
+		if(load >= 0.8){//rehash the table
+			if(maxCapacity > 0){
+				rehash(Math.min(cap * 2, maxCapacity));
+			}
+			else if(incremental){
+				finishMigration();
+				startMigration(cap * 2);
+			}
+			else{
+				rehash(cap * 2);
 			}
 		}
 		return true; 
@@ -226,14 +565,33 @@ public class ThreeTenHashTable<K, V> {
 	 * @return	value that maps the key, if key does not exist, return null
 	 */
 	public V get(K key) {
-		for(int i = 0; i < capacity(); i++){
-			if((storage[i] == null) || (isTombstone(i))){
-				continue;
-			}
-			else if((storage[i].key).equals(key)){
-				return storage[i].value;
+		if(key == null){
+			return null;
+		}
+		migrateSome();
+		int h = key.hashCode();
+		int index = findSlot(storage, hashes, key, h);
+		int probes = lastProbes;
+		int old = -1;
+		if(index == -1 && oldStorage != null){//key may not have been migrated yet
+			old = findSlot(oldStorage, oldHashes, key, h);
+			probes += lastProbes;
+		}
+		if(stats != null){//one lookup, even when both tables were searched
+			stats.recordProbe(index != -1 || old != -1, probes);
+		}
+		if(index != -1){
+			hits++;
+			if(refBits != null){
+				refBits[index] = true;
 			}
+			return storage[index].value;
+		}
+		if(old != -1){
+			hits++;
+			return oldStorage[old].value;
 		}
+		misses++;
 		return null;
 	}
 	
@@ -262,68 +620,729 @@ public class ThreeTenHashTable<K, V> {
 	 */
 	@SuppressWarnings("unchecked")
 	public boolean rehash(int newCap) {
+		if(newCap <= 0){
+			return false;
+		}
+		finishMigration();
+		if(powerOfTwo){
+			newCap = nextPowerOfTwo(newCap);
+		}
 		double load = (double)size / newCap;
-		TableEntry<K,V>[] newStorage = (TableEntry<K,V>[]) new TableEntry[newCap];
-		int index = 0;
-
 		if(load >= 0.8){
 			return false;
 		}
+		long start = (stats != null) ? System.nanoTime() : 0;
+		TableEntry<K,V>[] newStorage = (TableEntry<K,V>[]) new TableEntry[newCap];
+		int[] newHashes = new int[newCap];
+		boolean[] newRefs = (refBits != null) ? new boolean[newCap] : null;
 		
 		//move pairs from storage to newStorage
 		for(int i = 0; i < capacity(); i++){
-			if(isTombstone(i) || (storage[i] == null)){//there is Tombstone or null slot
+			if((storage[i] == null) || (storage[i] == tombStone)){//there is Tombstone or null slot
 				continue;
 			}
-			else{//no Tombstone
-				index = Math.abs((storage[i].key).hashCode()) % newCap;
-
-				if(newStorage[index] == null){//empty slot in newStorage
-					newStorage[index] = storage[i];
-				}
-				else{//means something is already here
-					index++;//move to next index
-					while(index < newCap){
-						if(newStorage[index] == null){//empty slot in newStorage
-							newStorage[index] = storage[i];
-							break;
-						}
-						else{
-							index++;
-						}
-					}
-					
-				}
-			}
+			placeEntry(newStorage, newHashes, newRefs, storage[i], hashes[i], refBits != null && refBits[i]);
 		}
 		storage = newStorage;
+		hashes = newHashes;
+		refBits = newRefs;
+		clockHand = 0;
+		tombstones = 0;
+		if(stats != null){
+			stats.recordRehash(System.nanoTime() - start);
+		}
 		return true;
 	}
 	
+	/**
+	 * grow the table once so that expected more keys fit without another rehash.
+	 * Does nothing if the table is big enough already.
+	 * In bounded mode the table never grows beyond its maximum capacity.
+	 * O(n) where n is the capacity of the table if it grows, O(1) otherwise.
+	 * @param expected number of keys about to be added
+	 */
+	public void ensureCapacity(int expected) {
+		long needed = (long)((size + (long)Math.max(expected, 0)) / 0.8) + 1;//keeps load below 0.8
+		if(maxCapacity > 0){
+			needed = Math.min(needed, maxCapacity);
+		}
+		needed = Math.min(needed, powerOfTwo ? (1 << 30) : Integer.MAX_VALUE - 8);
+		if(needed > capacity()){
+			rehash((int)needed);
+		}
+	}
+
+	/**
+	 * Put every keys[i]:vals[i] pair in the table.
+	 * The table is sized once for all pairs up front, so the inserts never trigger a rehash.
+	 * Pairs with a null key or value are skipped, later duplicates replace earlier ones.
+	 * Average case: O(n) where n is the number of pairs.
+	 * @param keys takes keys
+	 * @param vals takes values, vals[i] belongs to keys[i]
+	 * @return false w/o updating the table if an array is null or the lengths differ; otherwise true
+	 */
+	public boolean putAll(K[] keys, V[] vals) {
+		if(keys == null || vals == null || keys.length != vals.length){
+			return false;
+		}
+		ensureCapacity(keys.length);
+		for(int i = 0; i < keys.length; i++){
+			put(keys[i], vals[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Put every key:value pair of entries in the table.
+	 * The table is sized once for count pairs up front; if entries holds more,
+	 * the table grows as usual for the rest.
+	 * Pairs with a null key or value are skipped, later duplicates replace earlier ones.
+	 * Average case: O(n) where n is the number of pairs.
+	 * @param entries takes key:value pairs
+	 * @param count number of pairs in entries
+	 * @return false w/o updating the table if entries is null; otherwise true
+	 */
+	public boolean putAll(Iterable<? extends java.util.Map.Entry<? extends K, ? extends V>> entries, int count) {
+		if(entries == null){
+			return false;
+		}
+		ensureCapacity(count);
+		for(java.util.Map.Entry<? extends K, ? extends V> e : entries){
+			put(e.getKey(), e.getValue());
+		}
+		return true;
+	}
+
 	/**
 	 * Remove the given key (and associated value) from the table. Return the value removed.	
 	 * If the key is not in the table, return null.
 	 * Hint: Remember to leave a tombstone!
+	 * Afterwards the table may shrink or drop its tombstones, see setShrinkLoad() and setTombstoneLimit().
 	 * Worst case: O(n) where n is the number of items in table, Average case: O(1).
 	 * @param key takes key
 	 * @return value removed
 	 */
 	public V remove(K key) {
-		V removal = null;
+		if(key == null){
+			return null;
+		}
+		migrateSome();
+		int h = key.hashCode();
+		int index = findSlot(storage, hashes, key, h);
+		int probes = lastProbes;
+		int old = -1;
+		if(index == -1 && oldStorage != null){//key may not have been migrated yet
+			old = findSlot(oldStorage, oldHashes, key, h);
+			probes += lastProbes;
+		}
+		if(stats != null){//one lookup, even when both tables were searched
+			stats.recordProbe(index != -1 || old != -1, probes);
+		}
+		if(old != -1){
+			V removal = oldStorage[old].value;
+			oldStorage[old] = tombStone;//old table is discarded once drained
+			size--;
+			return removal;
+		}
+		if(index == -1){
+			return null;
+		}
+		V removal = storage[index].value;
+		removeAt(index);
+		compact();
+		return removal;
+	}
+
+	/**
+	 * empty the given slot of storage, leaving a tombstone or shifting back in Robin Hood mode.
+	 * O(1) on average.
+	 * @param index slot of a live entry
+	 */
+	private void removeAt(int index) {
+		if(robinHood){
+			shiftBack(index);
+		}
+		else{
+			storage[index] = tombStone;//set tombStone
+			tombstones++;
+			if(refBits != null){
+				refBits[index] = false;
+			}
+		}
+		size--;
+	}
+
+	/**
+	 * evict one entry chosen by the CLOCK algorithm: the hand sweeps the slots,
+	 * clearing reference bits, and evicts the first entry whose bit is already clear.
+	 * O(n) worst case where n is the capacity of the table, O(1) amortized.
+	 */
+	private void evictOne() {
+		int cap = capacity();
+		for(int step = 0; step <= 2 * cap; step++){//two sweeps always find a victim
+			int slot = clockHand;
+			clockHand++;
+			if(clockHand == cap){
+				clockHand = 0;
+			}
+			TableEntry<K,V> entry = storage[slot];
+			if(entry == null || entry == tombStone){
+				continue;
+			}
+			if(refBits[slot]){//second chance
+				refBits[slot] = false;
+				continue;
+			}
+			removeAt(slot);
+			evictions++;
+			if(evictionListener != null){
+				evictionListener.accept(entry.key, entry.value);
+			}
+			return;
+		}
+	}
+
+	/**
+	 * turn bounded (cache) mode on or off.
+	 * In bounded mode the table grows up to maxCap and then, instead of growing, evicts
+	 * an entry with the CLOCK (second chance) algorithm to make room for a new key.
+	 * New entries start with a clear reference bit; get() sets the bit of the entry it finds. Bounded tables always
+	 * resize in one go, so incremental mode is turned off. With the power-of-two
+	 * policy, maxCap is rounded down to a power of two.
+	 * If the table is bigger than maxCap, entries are evicted until it fits.
+	 * @param maxCap maximum capacity (at least 2), or 0 to make the table unbounded again
+	 * @return false w/o changing anything if maxCap is invalid; otherwise true
+	 */
+	public boolean setBounded(int maxCap) {
+		if(maxCap == 0){
+			maxCapacity = 0;
+			refBits = null;
+			return true;
+		}
+		if(maxCap < 2){
+			return false;
+		}
+		setIncremental(false);
+		if(powerOfTwo){
+			maxCap = Integer.highestOneBit(maxCap);
+		}
+		if(refBits == null){
+			refBits = new boolean[capacity()];
+		}
+		maxCapacity = maxCap;
+		while(size >= 0.8 * maxCap){
+			evictOne();
+		}
+		if(capacity() > maxCap){
+			rehash(maxCap);
+		}
+		return true;
+	}
+
+	/**
+	 * O(1).
+	 * @return the maximum capacity in bounded mode, 0 when unbounded
+	 */
+	public int getMaxCapacity() {
+		return maxCapacity;
+	}
+
+	/**
+	 * set the callback run with the key and value of every evicted entry.
+	 * @param listener the callback, or null for none
+	 */
+	public void setEvictionListener(java.util.function.BiConsumer<? super K, ? super V> listener) {
+		evictionListener = listener;
+	}
+
+	/**
+	 * O(1).
+	 * @return number of get() calls that found their key
+	 */
+	public long hitCount() {
+		return hits;
+	}
+
+	/**
+	 * O(1).
+	 * @return number of get() calls that did not find their key
+	 */
+	public long missCount() {
+		return misses;
+	}
+
+	/**
+	 * O(1).
+	 * @return number of entries evicted in bounded mode
+	 */
+	public long evictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * shrink the table when it is mostly empty, or rebuild it in place when
+	 * too many of its slots are tombstones. Skipped during an incremental resize.
+	 * O(1) unless a rebuild happens, then O(n) where n is the capacity of the table.
+	 */
+	private void compact() {
+		if(oldStorage != null){
+			return;
+		}
+		int cap = capacity();
+		if(size < shrinkLoad * cap && cap / 2 >= minCapacity){
+			rehash(cap / 2);
+		}
+		else if(tombstones > tombstoneLimit * cap){
+			rehash(cap);
+		}
+	}
+
+	/**
+	 * set the load below which a removal halves the capacity.
+	 * The table never shrinks below the capacity it was created with.
+	 * @param load value in [0, 0.4); 0 turns shrinking off
+	 * @return false w/o changing anything if load is out of range; otherwise true
+	 */
+	public boolean setShrinkLoad(double load) {
+		if(load < 0 || load >= 0.4){//halving must keep the load below 0.8
+			return false;
+		}
+		shrinkLoad = load;
+		return true;
+	}
+
+	/**
+	 * O(1).
+	 * @return the load below which a removal halves the capacity
+	 */
+	public double getShrinkLoad() {
+		return shrinkLoad;
+	}
+
+	/**
+	 * set the fraction of tombstone slots above which a removal rebuilds the table.
+	 * @param limit value in (0, 1]; 1 turns the cleanup off
+	 * @return false w/o changing anything if limit is out of range; otherwise true
+	 */
+	public boolean setTombstoneLimit(double limit) {
+		if(limit <= 0 || limit > 1){
+			return false;
+		}
+		tombstoneLimit = limit;
+		return true;
+	}
+
+	/**
+	 * O(1).
+	 * @return the fraction of tombstone slots above which a removal rebuilds the table
+	 */
+	public double getTombstoneLimit() {
+		return tombstoneLimit;
+	}
+
+	/**
+	 * turn statistics collection on or off.
+	 * When off, the table keeps no counters and each probe pays only a null check.
+	 * Turning it on starts from zeroed counters.
+	 * @param on true to collect statistics
+	 */
+	public void setStatsEnabled(boolean on) {
+		stats = on ? new ThreeTenHashStats() : null;
+	}
+
+	/**
+	 * report the collected statistics, with slot counts and the longest
+	 * cluster of storage computed now.
+	 * O(n) where n is the capacity of the table.
+	 * @return the statistics, or null when collection is off
+	 */
+	public ThreeTenHashStats getStats() {
+		if(stats == null){
+			return null;
+		}
+		int live = 0;
+		int tomb = 0;
+		int longest = 0;
+		int run = 0;
+		int firstRun = -1;//run touching index 0, joined with the last run (wrap-around)
 		for(int i = 0; i < capacity(); i++){
-			if((storage[i] == null) || (isTombstone(i))){
+			if(storage[i] == null){
+				if(firstRun == -1){
+					firstRun = run;
+				}
+				run = 0;
 				continue;
 			}
-			else if((storage[i].key).equals(key)){
-				removal = storage[i].value;
-				storage[i] = tombStone;//set tombStone
-				size--;
-				return removal;
+			if(storage[i] == tombStone){
+				tomb++;
 			}
+			else{
+				live++;
+			}
+			run++;
+			longest = Math.max(longest, run);
+		}
+		if(firstRun == -1){//no empty slot at all
+			longest = capacity();
+		}
+		else{
+			longest = Math.max(longest, firstRun + run);
+		}
+		stats.setOccupancy(live, tomb, capacity() - live - tomb, longest);
+		return stats;
+	}
+
+	/**
+	 * O(1).
+	 * @return the number of tombstones in the table
+	 */
+	public int tombstoneCount() {
+		return tombstones;
+	}
+
+	/**
+	 * backward shift deletion used in Robin Hood mode.
+	 * empties the slot at hole and moves the following displaced entries
+	 * one slot closer to their home, so no tombstone is needed.
+	 * O(1) on average.
+	 * @param hole slot of the entry being removed
+	 */
+	private void shiftBack(int hole) {
+		int cap = capacity();
+		int next = hole + 1;
+		if(next == cap){
+			next = 0;
+		}
+		while(storage[next] != null && displacement(hashes, next) > 0){
+			storage[hole] = storage[next];
+			hashes[hole] = hashes[next];
+			if(refBits != null){
+				refBits[hole] = refBits[next];
+			}
+			hole = next;
+			next++;
+			if(next == cap){
+				next = 0;
+			}
+		}
+		storage[hole] = null;
+		if(refBits != null){
+			refBits[hole] = false;
 		}
-		return null;
 	}
 
+	/**
+	 * turn Robin Hood probing on or off.
+	 * the table is rebuilt at the same capacity, which drops every tombstone.
+	 * O(n) where n is the capacity of the table.
+	 * @param on true to use Robin Hood probing, false for plain linear probing
+	 */
+	public void setRobinHood(boolean on) {
+		robinHood = on;
+		rehash(capacity());
+	}
+
+	/**
+	 * turn incremental resizing on or off.
+	 * When on, growing the table only allocates the new array; every later put/get/remove
+	 * moves a bounded number of buckets from the old array, so no single call pays for the
+	 * whole copy. Until the old array is drained, toString(), toStringDebug() and isTombstone()
+	 * only look at the new array.
+	 * Turning it off finishes any resize in progress. It cannot be turned on in bounded mode.
+	 * @param on true to resize incrementally, false to rehash in one go
+	 */
+	public void setIncremental(boolean on) {
+		incremental = on && maxCapacity == 0;
+		if(!on){
+			finishMigration();
+		}
+	}
+
+	/**
+	 * turn the power-of-two capacity policy on or off.
+	 * When on, the table is rebuilt with its capacity rounded up to a power of two,
+	 * later rehash(newCap) calls round newCap up as well, and home slots are taken
+	 * from the spread hash code with a bit mask instead of a modulo.
+	 * O(n) where n is the capacity of the table.
+	 * @param on true for power-of-two capacities, false for the default modulo indexing
+	 */
+	public void setPowerOfTwo(boolean on) {
+		finishMigration();
+		powerOfTwo = on;
+		rehash(capacity());
+	}
+
+	/**
+	 * report whether an incremental resize is still in progress.
+	 * O(1).
+	 * @return true while the old array still has entries to move
+	 */
+	public boolean isMigrating() {
+		return oldStorage != null;
+	}
+
+	/**
+	 * start an incremental resize: storage becomes an empty array of newCap
+	 * and the current array is kept as oldStorage until it is drained.
+	 * O(newCap) for the allocation only.
+	 * @param newCap capacity of the new array
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void startMigration(int newCap) {
+		oldStorage = storage;
+		oldHashes = hashes;
+		storage = (TableEntry<K,V>[]) new TableEntry[newCap];
+		hashes = new int[newCap];
+		tombstones = 0;
+		migrateIndex = 0;
+		if(stats != null){
+			stats.recordRehash(0);//moving time is added by migrateSome()
+		}
+	}
+
+	/**
+	 * move up to MIGRATE_STEP slots of oldStorage into storage.
+	 * moved slots become tombstones so probe chains in oldStorage stay intact.
+	 * O(1).
+	 */
+	private void migrateSome() {
+		if(oldStorage == null){
+			return;
+		}
+		long start = (stats != null) ? System.nanoTime() : 0;
+		int end = Math.min(migrateIndex + MIGRATE_STEP, oldStorage.length);
+		for(; migrateIndex < end; migrateIndex++){
+			TableEntry<K,V> entry = oldStorage[migrateIndex];
+			if(entry != null && entry != tombStone){
+				placeEntry(storage, hashes, null, entry, oldHashes[migrateIndex], false);
+				oldStorage[migrateIndex] = tombStone;
+			}
+		}
+		if(migrateIndex == oldStorage.length){//fully drained
+			oldStorage = null;
+			oldHashes = null;
+		}
+		if(stats != null){
+			stats.recordMigration(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * move everything left in oldStorage into storage.
+	 * O(n) where n is the capacity of oldStorage.
+	 */
+	private void finishMigration() {
+		while(oldStorage != null){
+			migrateSome();
+		}
+	}
+
+	/**
+	 * report whether Robin Hood probing is used.
+	 * O(1).
+	 * @return true in Robin Hood mode
+	 */
+	public boolean isRobinHood() {
+		return robinHood;
+	}
+
+	/**
+	 * report the largest distance between an entry and its home slot.
+	 * O(n) where n is the capacity of the table.
+	 * @return the maximum displacement, 0 for an empty table
+	 */
+	public int maxDisplacement() {
+		int max = 0;
+		for(int i = 0; i < capacity(); i++){
+			if(storage[i] != null && storage[i] != tombStone){
+				max = Math.max(max, displacement(hashes, i));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * report the average distance between an entry and its home slot.
+	 * O(n) where n is the capacity of the table.
+	 * @return the average displacement, 0 for an empty table
+	 */
+	public double averageDisplacement() {
+		if(size == 0){
+			return 0.0;
+		}
+		long total = 0;
+		for(int i = 0; i < capacity(); i++){
+			if(storage[i] != null && storage[i] != tombStone){
+				total += displacement(hashes, i);
+			}
+		}
+		return (double)total / size;
+	}
+
+	/**
+	 * reusable position in storage for walking the entries without allocating.
+	 * Use as: while(c.advance()){ ... c.key() ... c.value() ... }.
+	 * The table must not be changed while a cursor walks it.
+	 */
+	public class Cursor {
+
+		/**
+		 * slot of the current entry, -1 before the first advance().
+		 */
+		private int index = -1;
+
+		/**
+		 * move to the next live entry, skipping null and tombstone slots.
+		 * O(1) amortized over a whole walk.
+		 * @return false once there are no more entries
+		 */
+		public boolean advance() {
+			int cap = storage.length;
+			while(++index < cap){
+				if(storage[index] != null && storage[index] != tombStone){
+					return true;
+				}
+			}
+			index = cap;
+			return false;
+		}
+
+		/**
+		 * getter.
+		 * @return key of the current entry
+		 */
+		public K key() {
+			return storage[index].key;
+		}
+
+		/**
+		 * getter.
+		 * @return value of the current entry
+		 */
+		public V value() {
+			return storage[index].value;
+		}
+
+		/**
+		 * start the walk over from the first slot.
+		 */
+		public void reset() {
+			index = -1;
+		}
+	}
+
+	/**
+	 * create a cursor over the entries, in slot order.
+	 * Finishes any incremental resize first so every entry is in storage.
+	 * @return a cursor positioned before the first entry
+	 */
+	public Cursor cursor() {
+		finishMigration();
+		return new Cursor();
+	}
+
+	/**
+	 * run action on every key:value pair, in slot order.
+	 * Finishes any incremental resize first. Allocates nothing per entry.
+	 * O(n) where n is the capacity of the table.
+	 * @param action takes each key and value
+	 */
+	public void forEach(java.util.function.BiConsumer<? super K, ? super V> action) {
+		finishMigration();
+		for(int i = 0; i < storage.length; i++){
+			TableEntry<K,V> entry = storage[i];
+			if(entry != null && entry != tombStone){
+				action.accept(entry.key, entry.value);
+			}
+		}
+	}
+
+	/**
+	 * splittable walk over a range of storage, for parallel streams.
+	 */
+	private class EntrySpliterator implements java.util.Spliterator<java.util.Map.Entry<K,V>> {
+
+		/**
+		 * next slot to look at.
+		 */
+		private int lo;
+
+		/**
+		 * end of the range, exclusive.
+		 */
+		private final int hi;
+
+		/**
+		 * Constructor.
+		 * @param lo first slot of the range
+		 * @param hi end of the range, exclusive
+		 */
+		private EntrySpliterator(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		/**
+		 * hand the next live entry to action.
+		 * @param action takes the entry
+		 * @return false if the range has no more entries
+		 */
+		@Override
+		public boolean tryAdvance(java.util.function.Consumer<? super java.util.Map.Entry<K,V>> action) {
+			while(lo < hi){
+				TableEntry<K,V> entry = storage[lo++];
+				if(entry != null && entry != tombStone){
+					action.accept(new java.util.AbstractMap.SimpleImmutableEntry<>(entry.key, entry.value));
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * split off the first half of the remaining range.
+		 * @return spliterator over the first half, null if the range is too small to split
+		 */
+		@Override
+		public java.util.Spliterator<java.util.Map.Entry<K,V>> trySplit() {
+			int mid = (lo + hi) >>> 1;
+			if(lo >= mid){
+				return null;
+			}
+			EntrySpliterator first = new EntrySpliterator(lo, mid);
+			lo = mid;
+			return first;
+		}
+
+		/**
+		 * entries left, assuming they are spread evenly over storage.
+		 * @return estimated number of entries in the range
+		 */
+		@Override
+		public long estimateSize() {
+			return (storage.length == 0) ? 0 : (long)size * (hi - lo) / storage.length;
+		}
+
+		/**
+		 * characteristics.
+		 * @return DISTINCT and NONNULL
+		 */
+		@Override
+		public int characteristics() {
+			return java.util.Spliterator.DISTINCT | java.util.Spliterator.NONNULL;
+		}
+	}
+
+	/**
+	 * create a spliterator over the key:value pairs that splits storage into ranges.
+	 * Use with java.util.stream.StreamSupport.stream(table.spliterator(), true) for a parallel stream.
+	 * Finishes any incremental resize first. The table must not be changed while it is in use.
+	 * @return a spliterator over all entries
+	 */
+	public java.util.Spliterator<java.util.Map.Entry<K,V>> spliterator() {
+		finishMigration();
+		return new EntrySpliterator(0, storage.length);
+	}
 
 	//-------------------------------------------------------------
 	// TESTING CODE   
@@ -382,5 +1401,169 @@ public class ThreeTenHashTable<K, V> {
 			System.out.println("Yay 6");										
 		}
 
+		//wrap-around probing: 9 and 14 both start at the last slot
+		ThreeTenHashTable<Integer,Character> ht2 = new ThreeTenHashTable<>(5);
+		if (ht2.put(4, 'A') && ht2.put(9, 'B') && ht2.put(14, 'C') && ht2.get(9).equals('B')
+			&& ht2.get(14).equals('C') && ht2.get(19) == null
+			&& ht2.toStringDebug().equals("[0]: 9:B\n[1]: 14:C\n[2]: null\n[3]: null\n[4]: 4:A")
+			&& ht2.remove(9).equals('B') && ht2.get(14).equals('C')){
+			System.out.println("Yay 7");
+		}
+
+		//Robin Hood: 11 takes slot 2 from 2, removal shifts back instead of leaving a tombstone
+		ThreeTenHashTable<Integer,Character> ht3 = new ThreeTenHashTable<>(10);
+		ht3.setRobinHood(true);
+		ht3.put(1, 'A');
+		ht3.put(2, 'B');
+		ht3.put(11, 'C');
+		ht3.put(21, 'D');
+		if (ht3.toStringDebug().equals("[0]: null\n[1]: 1:A\n[2]: 11:C\n[3]: 21:D\n[4]: 2:B\n[5]: null\n[6]: null\n[7]: null\n[8]: null\n[9]: null")
+			&& ht3.maxDisplacement() == 2 && ht3.averageDisplacement() == 1.25
+			&& ht3.remove(1).equals('A') && ht3.get(2).equals('B') && ht3.get(21).equals('D')
+			&& ht3.toStringDebug().equals("[0]: null\n[1]: 11:C\n[2]: 21:D\n[3]: 2:B\n[4]: null\n[5]: null\n[6]: null\n[7]: null\n[8]: null\n[9]: null")){
+			System.out.println("Yay 8");
+		}
+
+		//incremental resize: old and new arrays coexist until the old one is drained
+		ThreeTenHashTable<Integer,Character> ht4 = new ThreeTenHashTable<>(5);
+		ht4.setIncremental(true);
+		ht4.put(1, 'A');
+		ht4.put(2, 'B');
+		ht4.put(3, 'C');
+		ht4.put(4, 'D');
+		if (ht4.capacity() == 10 && ht4.isMigrating() && ht4.size() == 4 && ht4.get(1).equals('A')
+			&& ht4.put(3, 'Z') && ht4.get(3).equals('Z') && ht4.size() == 4 && !ht4.isMigrating()
+			&& ht4.get(4).equals('D') && ht4.remove(2).equals('B') && ht4.size() == 3){
+			System.out.println("Yay 9");
+		}
+
+		//power-of-two policy: capacity is rounded up, Integer.MIN_VALUE hashes are fine
+		ThreeTenHashTable<Integer,Character> ht5 = new ThreeTenHashTable<>(5);
+		ht5.setPowerOfTwo(true);
+		if (ht5.capacity() == 8 && ht5.put(Integer.MIN_VALUE, 'M') && ht5.put(7, 'S')
+			&& ht5.get(Integer.MIN_VALUE).equals('M') && ht5.rehash(12) && ht5.capacity() == 16
+			&& ht5.get(7).equals('S') && new ThreeTenHashTable<Integer,Character>(5).put(Integer.MIN_VALUE, 'M')){
+			System.out.println("Yay 10");
+		}
+
+		//automatic compaction: tombstones are cleaned up, then the table shrinks back
+		ThreeTenHashTable<Integer,Character> ht6 = new ThreeTenHashTable<>(10);
+		for(int i = 0; i < 30; i++){
+			ht6.put(i, 'x');
+		}
+		boolean compacted = (ht6.capacity() == 40);
+		for(int i = 0; i < 11; i++){
+			ht6.remove(i);
+		}
+		compacted = compacted && ht6.tombstoneCount() == 0 && ht6.capacity() == 40 && ht6.get(20).equals('x');
+		for(int i = 11; i < 29; i++){
+			ht6.remove(i);
+		}
+		if (compacted && ht6.size() == 1 && ht6.capacity() == 10 && ht6.get(29).equals('x')
+			&& !ht6.setShrinkLoad(0.5) && ht6.setShrinkLoad(0) && ht6.setTombstoneLimit(1)){
+			System.out.println("Yay 11");
+		}
+
+		//statistics: 1, 11 and 21 form one cluster of three
+		ThreeTenHashTable<Integer,Character> ht7 = new ThreeTenHashTable<>(10);
+		ht7.setStatsEnabled(true);
+		ht7.put(1, 'A');
+		ht7.put(11, 'B');
+		ht7.put(21, 'C');
+		ht7.get(21);
+		ht7.get(31);
+		ThreeTenHashStats st = ht7.getStats();
+		if (st.liveSlots() == 3 && st.emptySlots() == 7 && st.tombstoneSlots() == 0 && st.longestCluster() == 3
+			&& st.hitHistogram()[3] == 1 && st.missHistogram()[4] == 1 && st.missHistogram()[3] == 1
+			&& st.rehashCount() == 0 && ht1.getStats() == null){
+			System.out.println("Yay 12");
+		}
+
+		//bounded cache: capacity 5 holds 3 entries, recently read 1 survives eviction
+		ThreeTenHashTable<Integer,Character> ht8 = new ThreeTenHashTable<>(5);
+		final StringBuilder evictedKeys = new StringBuilder();
+		ht8.setBounded(5);
+		ht8.setEvictionListener((k, v) -> evictedKeys.append(k));
+		for(int i = 1; i <= 5; i++){
+			ht8.put(i, 'x');
+			ht8.get(1);
+		}
+		if (ht8.capacity() == 5 && ht8.size() == 3 && ht8.get(1) != null && ht8.evictionCount() == 2
+			&& evictedKeys.toString().equals("23") && ht8.get(2) == null && ht8.missCount() == 1
+			&& ht8.hitCount() == 6){
+			System.out.println("Yay 13");
+		}
+
+		//bulk load: one rehash for 1000 keys instead of one per doubling
+		ThreeTenHashTable<Integer,Integer> ht9 = new ThreeTenHashTable<>();
+		ht9.setStatsEnabled(true);
+		Integer[] bulkKeys = new Integer[1000];
+		for(int i = 0; i < bulkKeys.length; i++){
+			bulkKeys[i] = i;
+		}
+		java.util.List<java.util.Map.Entry<Integer,Integer>> more = new java.util.ArrayList<>();
+		for(int i = 1000; i < 1500; i++){
+			more.add(new java.util.AbstractMap.SimpleEntry<>(i, i));
+		}
+		if (ht9.putAll(bulkKeys, bulkKeys) && ht9.getStats().rehashCount() == 1 && ht9.size() == 1000
+			&& ht9.capacity() == 1251 && ht9.putAll(more, more.size()) && ht9.getStats().rehashCount() == 2
+			&& ht9.get(999) == 999 && ht9.get(1499) == 1499 && !ht9.putAll(bulkKeys, new Integer[1])){
+			System.out.println("Yay 14");
+		}
+
+		//cursor, forEach and a parallel stream all see every entry once
+		long[] sum = new long[1];
+		ht9.forEach((k, v) -> sum[0] += v);
+		ThreeTenHashTable<Integer,Integer>.Cursor cur = ht9.cursor();
+		int visited = 0;
+		while(cur.advance()){
+			if(cur.key().equals(cur.value())){
+				visited++;
+			}
+		}
+		long streamed = java.util.stream.StreamSupport.stream(ht9.spliterator(), true)
+			.mapToLong(e -> e.getValue()).sum();
+		if (sum[0] == 1499L * 1500 / 2 && visited == 1500 && streamed == sum[0] && !cur.advance()){
+			System.out.println("Yay 15");
+		}
+
+		//bounded just above the current capacity: evicts instead of filling the table up
+		boolean fits = true;
+		for(int mode = 0; mode < 2; mode++){
+			ThreeTenHashTable<Integer,Integer> small = new ThreeTenHashTable<>(4);
+			small.setRobinHood(mode == 1);
+			small.setBounded(5);
+			for(int i = 0; i < 20; i++){
+				fits = fits && small.put(i, i) && small.get(i) == i && (double)small.size() / small.capacity() < 0.8;
+			}
+			fits = fits && small.capacity() <= 5 && small.evictionCount() > 0;
+		}
+		if (fits){
+			System.out.println("Yay 16");
+		}
+
+		//during an incremental resize a lookup that searches both arrays is counted once
+		boolean once = true;
+		for(int mode = 0; mode < 2; mode++){
+			ThreeTenHashTable<Integer,Integer> inc = new ThreeTenHashTable<>(2);
+			inc.setRobinHood(mode == 1);
+			inc.setIncremental(true);
+			inc.setStatsEnabled(true);
+			for(int i = 0; i < 3000 || !inc.isMigrating(); i++){
+				inc.put(i, i);
+			}
+			inc.getStats().reset();
+			for(int i = 0; i < 100; i++){
+				once = once && inc.get(i) != null && inc.get(-1 - i) == null;
+			}
+			once = once && inc.isMigrating() && inc.remove(0) != null && inc.put(1, 1) && inc.put(-1, -1);
+			ThreeTenHashStats s = inc.getStats();
+			once = once && java.util.Arrays.stream(s.hitHistogram()).sum() == 102
+				&& java.util.Arrays.stream(s.missHistogram()).sum() == 101;
+		}
+		if (once){
+			System.out.println("Yay 17");
+		}
+
 	}
 }
\ No newline at end of file
@@ -0,0 +1,250 @@
+/**
+ * k-ary tree of distinct int values, without boxing.
+ * Same set/get/has/isLeaf/getAncestors/getChildren/remove rules as ThreeTenKTree&lt;Integer&gt;;
+ * since an int cannot be null, clear(index) removes by index and get takes the value to
+ * return for an empty slot. About 10 bytes per node instead of about 40.
+ * @author Phat Tran
+ */
+public class ThreeTenIntKTree extends ThreeTenPrimitiveKTree {
+
+	/**
+	 * value of each slot, meaningful where the slot is occupied.
+	 */
+	private int[] values;
+
+	/**
+	 * Constructor.
+	 * @param length length of the storage array
+	 * @param k numbers of children a node can have the most
+	 */
+	public ThreeTenIntKTree(int length, int k) {
+		super(length, k);
+		values = new int[capacity()];
+	}
+
+	/**
+	 * O(1).
+	 * @param value a value
+	 * @return its spread hash
+	 */
+	private static int hash(int value) {
+		return ThreeTenHashTable.spread(value);
+	}
+
+	/**
+	 * find the index entry of a value.
+	 * Average case: O(1).
+	 * @param value value to look up
+	 * @return entry pointing at the value's slot, or the empty entry where it would go
+	 */
+	private int find(int value) {
+		int entry = home(hash(value));
+		for(int slot = slotAt(entry); slot != -1 && values[slot] != value; slot = slotAt(entry)){
+			entry = nextEntry(entry);
+		}
+		return entry;
+	}
+
+	@Override
+	protected int hashAt(int slot) {
+		return hash(values[slot]);
+	}
+
+	@Override
+	protected void resizeValues(int length) {
+		values = java.util.Arrays.copyOf(values, length);
+	}
+
+	@Override
+	protected void appendValue(StringBuilder string, int slot) {
+		string.append(values[slot]);
+	}
+
+	@Override
+	protected int entryOf(int slot) {
+		return find(values[slot]);
+	}
+
+	/**
+	 * bytes used by the value array, the bitmap and the index.
+	 * O(1).
+	 * @return the footprint, not counting object headers
+	 */
+	public long footprint() {
+		return footprint(4);
+	}
+
+	/**
+	 * set value at the specified index: add a node, or replace the value of one.
+	 * O(1) assuming hash table operations are O(1), O(n) when a level is added.
+	 * @param index where we want to store the node in storage array
+	 * @param value value of the node
+	 * @return false w/o changing anything if value is already in tree or the node would
+	 * 		have no parent; otherwise true
+	 */
+	public boolean set(int index, int value) {
+		int entry = find(value);
+		if(slotAt(entry) != -1){//value already in tree
+			return false;
+		}
+		if(isOccupied(index)){//replace
+			replacing(index);
+			values[index] = value;
+			replaced(index, find(value));
+			return true;
+		}
+		if(!canAdd(index)){
+			return false;
+		}
+		values[index] = value;
+		added(index, entry);
+		return true;
+	}
+
+	/**
+	 * get the node at specified index of the tree.
+	 * O(1).
+	 * @param index index of the node
+	 * @param missing value to return for an invalid index or an empty slot
+	 * @return the node's value, or missing
+	 */
+	public int get(int index, int missing) {
+		return isOccupied(index) ? values[index] : missing;
+	}
+
+	/**
+	 * O(1) assuming hash table search is O(1).
+	 * @param value a value
+	 * @return storage index of the node holding value, -1 if not present
+	 */
+	public int indexOf(int value) {
+		return slotAt(find(value));
+	}
+
+	/**
+	 * Determine if value is in tree or not.
+	 * O(1) assuming hash table search is O(1).
+	 * @param value node is used to check if there is this node in the tree
+	 * @return true if a tree node has value; false otherwise.
+	 */
+	public boolean has(int value) {
+		return indexOf(value) != -1;
+	}
+
+	/**
+	 * check if a node is a leaf node.
+	 * O(K / 64) where K is the branching factor, assuming hash table search is O(1).
+	 * @param value will be used to check if this node is a leaf
+	 * @return true if a leaf node has value; false otherwise
+	 */
+	public boolean isLeaf(int value) {
+		return isLeafSlot(indexOf(value));
+	}
+
+	/**
+	 * Remove value from tree if value is in a leaf node.
+	 * O(K / 64) where K is the branching factor, assuming hash table operations are O(1).
+	 * @param value will be removed
+	 * @return true if value if a leaf. Otherwise, false
+	 */
+	public boolean remove(int value) {
+		int index = indexOf(value);
+		return (index != -1) && clear(index);
+	}
+
+	/**
+	 * children of the node with the given value, from left to right.
+	 * O(K / 64 + c) where K is the branching factor and c the number of children.
+	 * @param value the node is used to check its children
+	 * @return children separated by a single space, empty for a leaf, null if value is not present
+	 */
+	public String getChildren(int value) {
+		return childrenOf(indexOf(value));
+	}
+
+	/**
+	 * ancestors of the node with the given value, from the root down, separated by "-->".
+	 * O(height) assuming hash table search is O(1).
+	 * @param value the node will be used to check its ancestors
+	 * @return a string including all the ancestors and the node itself, null if value is not present
+	 */
+	public String getAncestors(int value) {
+		return ancestorsOf(indexOf(value));
+	}
+
+	/**
+	 * bulk-load a tree from level-order values, like ThreeTenKTree(List, int).
+	 * values without a parent or already in the tree are skipped.
+	 * O(n) where n is the number of values, assuming hash table operations are O(1).
+	 * @param tokens node values in level order
+	 * @param present present[i] is false for an empty slot, null when every slot holds a node
+	 * @param k numbers of children a node can have the most
+	 * @return the tree
+	 */
+	public static ThreeTenIntKTree of(int[] tokens, boolean[] present, int k) {
+		ThreeTenIntKTree tree = new ThreeTenIntKTree(1, k);
+		tree.ensureIndex(tokens.length);
+		for(int i = 0; i < tokens.length; i++){
+			if(present == null || present[i]){
+				tree.set(i, tokens[i]);
+			}
+		}
+		return tree;
+	}
+
+	//-------------------------------------------------------------
+	// TESTING CODE
+	//-------------------------------------------------------------
+
+	/**
+	 * for testing purposes.
+	 * @param args command line argument
+	 */
+	public static void main(String[] args) {
+		ThreeTenIntKTree t = new ThreeTenIntKTree(7, 2);
+
+		//same behavior as ThreeTenKTree<Integer>
+		if(t.set(0, 0) && t.set(2, 2) && t.set(6, 6) && t.set(5, 5) && !t.set(3, 3) && !t.set(1, 5)
+			&& t.height() == 2 && t.size() == 4 && t.getAncestors(6).equals("0-->2-->6")
+			&& t.getChildren(2).equals("5 6") && t.getChildren(9) == null && t.isLeaf(5) && !t.isLeaf(2)
+			&& !t.remove(2) && t.remove(6) && !t.has(6) && t.get(6, -1) == -1 && t.set(11, 11)
+			&& t.capacity() == 15 && t.height() == 3 && t.set(5, 50) && !t.has(5) && t.get(5, -1) == 50
+			&& t.getChildren(50).equals("11") && t.toStringLevelOrder().equals("0 2 50 11")
+			&& t.toString().equals("0\nnull 2\nnull null 50 null\nnull null null null 11 null null null")
+			&& t.clear(11) && t.height() == 2 && !t.clear(11)) {
+			System.out.println("Yay 1");
+		}
+
+		//matches ThreeTenKTree<Integer> on a random workload
+		java.util.Random rnd = new java.util.Random(7);
+		ThreeTenIntKTree p = new ThreeTenIntKTree(1, 3);
+		ThreeTenKTree<Integer> boxed = new ThreeTenKTree<>(1, 3);
+		boolean same = true;
+		for(int i = 0; i < 20000 && same; i++){
+			int index = rnd.nextInt(500);
+			int value = rnd.nextInt(1000);
+			if(rnd.nextInt(4) == 0){
+				same = p.remove(value) == boxed.remove(value);
+			}
+			else{
+				same = p.set(index, value) == boxed.set(index, value);
+			}
+			same = same && p.size() == boxed.size() && p.height() == boxed.height() && p.has(value) == boxed.has(value)
+				&& java.util.Objects.equals(p.getAncestors(value), boxed.getAncestors(value));
+		}
+		if(same && p.toString().equals(boxed.toString())) {
+			System.out.println("Yay 2");
+		}
+
+		//a perfect tree takes about 10 bytes per node
+		int n = 1398101;//perfect 4-ary tree of height 10
+		int[] tokens = new int[n];
+		for(int i = 0; i < n; i++){
+			tokens[i] = i * 7;
+		}
+		ThreeTenIntKTree big = ThreeTenIntKTree.of(tokens, null, 4);
+		if(big.size() == n && big.height() == 10 && big.has(7 * (n - 1)) && big.footprint() < 10L * n) {
+			System.out.println("Yay 3");
+		}
+	}
+}
@@ -1,26 +1,32 @@
+import java.util.Arrays;
+
 /**
  * K Tree array class.
+ * snapshot() gives an immutable point-in-time view in O(1): it shares storage pages
+ * with the live tree, which copies a page only when it writes to it, see ThreeTenSlotStore.
+ * The index is shared the same way, page by page, see ThreeTenObjIntHashTable.
+ * open() gives a tree kept in memory-mapped files instead, see ThreeTenMappedSlotStore.
  * @param <E> takes any data types
  * @author Phat Tran
  */
-public class ThreeTenKTree<E> {
+public class ThreeTenKTree<E> implements AutoCloseable {
 	//K-ary tree with an array as internal storage.
 	//All nodes are stored in the array following level-order top-down 
 	//and left-to-right within one level.
 	//Root at index 0.
 
-	//underlying array for k-ary tree storage 
-	// -- you MUST use this for credit! Do NOT change the name or type
+	//underlying slot store for k-ary tree storage 
 	/**
 	 * storage array will be used to store node of K Tree array.
+	 * dense (chunked array) by default, sparse (slot hash map) when the tree is mostly empty slots.
 	 */
-	private E[] storage;
+	private ThreeTenSlotStore<E> storage;
 	
 	//hash table to help remember the index of each stored value
 	/**
-	 * hash Map.
+	 * hash Map from value to its index in storage, kept unboxed.
 	 */
-	private ThreeTenHashTable<E, Integer> indexMap;
+	private ThreeTenObjIntHashTable<E> indexMap;
 
 	//branching factor
 	/**
@@ -39,6 +45,37 @@ public class ThreeTenKTree<E> {
 	 */
 	private int treeHeight;
 
+	/**
+	 * levelStart[L] is the storage index of the leftmost node on level L.
+	 * the last entry is the first index beyond the int range.
+	 */
+	private long[] levelStart;
+
+	/**
+	 * levelCount[L] is the number of nodes on level L.
+	 */
+	private int[] levelCount;
+
+	/**
+	 * storage switches to the sparse store when size/capacity drops below this.
+	 */
+	private double sparseThreshold = 0.01;
+
+	/**
+	 * capacity below which storage always stays dense.
+	 */
+	private static final int SPARSE_MIN_CAPACITY = 1 << 16;
+
+	/**
+	 * true for a snapshot, which refuses every change.
+	 */
+	private boolean readOnly;
+
+	/**
+	 * storage of a tree opened from a file, null otherwise. It keeps its own index, so indexMap is null.
+	 */
+	private ThreeTenMappedSlotStore<E> mapped;
+
 	/**
 	 * Constructor.
 	 * initialize tree storage as an array of given length and branching factor as k.
@@ -50,15 +87,186 @@ public class ThreeTenKTree<E> {
 	 * @param length length of the storage array
 	 * @param k numbers of children a node can have the most
 	 */
-	@SuppressWarnings("unchecked")
 	public ThreeTenKTree(int length, int k) {
-		storage = (E[]) new Object[length];
-		indexMap = new ThreeTenHashTable<E, Integer>();
+		storage = new ThreeTenSegmentedArray<E>(length);
+		indexMap = new ThreeTenObjIntHashTable<E>();
 		branchK = k;
 		size = 0;
 		treeHeight = 0;
+		int levels = 1;
+		for(long start = 0; start <= Integer.MAX_VALUE; start = start * k + 1){
+			levels++;
+		}
+		levelStart = new long[levels];
+		for(int i = 1; i < levels; i++){
+			levelStart[i] = levelStart[i - 1] * k + 1;
+		}
+		levelCount = new int[levels];
+	}
+
+	/**
+	 * Constructor.
+	 * bulk-load a tree from its level-order tokens, null tokens are empty slots.
+	 * gives the same tree as calling set(i, tokens.get(i)) for every non-null token:
+	 * tokens without a parent or with a value already in the tree are skipped.
+	 * First pass validates parent links, fills the index map (sized once) and the level counts;
+	 * then storage is allocated once, at its final size, and filled.
+	 * O(n) where n is the number of tokens, assuming hash table operations are O(1).
+	 * @param tokens node values in level order, null for an empty slot
+	 * @param k numbers of children a node can have the most
+	 */
+	public ThreeTenKTree(java.util.List<? extends E> tokens, int k) {
+		this(1, k);
+		int n = tokens.size();
+		long[] accepted = new long[(n + 63) >>> 6];//slots that received a node
+		indexMap.ensureCapacity(n);
+		int last = -1;
+		int level = 0;
+		int i = 0;
+		for(E value : tokens){
+			if(i >= levelStart[level + 1]){
+				level++;
+			}
+			if(value != null){
+				int parent = (i - 1)/branchK;
+				boolean hasParent = (i == 0) || ((accepted[parent >>> 6] & (1L << parent)) != 0);
+				if(hasParent && !indexMap.containsKey(value)){
+					indexMap.putInt(value, i, -1);
+					accepted[i >>> 6] |= 1L << i;
+					levelCount[level]++;
+					size++;
+					last = i;
+				}
+			}
+			i++;
+		}
+		if(last == -1){//nothing loaded
+			return;
+		}
+		treeHeight = levelOf(last);
+		int length = (int)levelStart[treeHeight + 1];
+		if((length >= SPARSE_MIN_CAPACITY) && ((double)size / length < sparseThreshold)){
+			storage = new ThreeTenSparseSlotStore<E>(length, size);
+		}
+		else{
+			storage = new ThreeTenSegmentedArray<E>(length);
+		}
+		i = 0;
+		for(E value : tokens){
+			if((accepted[i >>> 6] & (1L << i)) != 0){
+				storage.set(i, value);
+			}
+			i++;
+		}
 	}
 	
+	/**
+	 * Constructor of a snapshot.
+	 * O(1) plus O(h) for the level counts, where h is the number of levels.
+	 * @param live tree the snapshot is taken of
+	 */
+	private ThreeTenKTree(ThreeTenKTree<E> live) {
+		storage = live.storage.snapshot();
+		branchK = live.branchK;
+		size = live.size;
+		treeHeight = live.treeHeight;
+		levelStart = live.levelStart;//never changes after construction
+		levelCount = live.levelCount.clone();
+		sparseThreshold = live.sparseThreshold;
+		readOnly = true;
+		indexMap = live.indexMap.snapshot();
+	}
+
+	/**
+	 * Constructor of a tree kept in memory-mapped files.
+	 * O(h) where h is the number of levels; no node is read.
+	 * @param store the opened files
+	 */
+	private ThreeTenKTree(ThreeTenMappedSlotStore<E> store) {
+		this(1, store.branch());
+		storage = store;
+		mapped = store;
+		indexMap = null;
+		size = store.count();
+		int[] saved = store.levelCounts();
+		System.arraycopy(saved, 0, levelCount, 0, Math.min(saved.length, levelCount.length));
+		for(int level = 0; level < levelCount.length; level++){
+			if(levelCount[level] > 0){
+				treeHeight = level;
+			}
+		}
+	}
+
+	/**
+	 * open a tree kept in memory-mapped files, or create an empty one.
+	 * Opening maps the files and reads their header only, so it takes about the same time
+	 * for any size; nodes are paged in by the OS when they are first touched.
+	 * Changes reach the files through the mapping and are durable after force() or close().
+	 * The tree never switches to sparse storage and has no snapshots.
+	 * O(h + s) where h is the number of levels and s the number of 1 GB file segments.
+	 * @param <E> value type
+	 * @param file slot file, the index goes next to it with ".idx" appended
+	 * @param codec fixed-width encoding of the values
+	 * @param k numbers of children a node can have the most
+	 * @return the tree, close() it when done
+	 * @throws java.io.IOException if the files cannot be opened or were written with another codec width or k
+	 */
+	public static <E> ThreeTenKTree<E> open(java.nio.file.Path file, ThreeTenValueCodec<E> codec, int k)
+		throws java.io.IOException {
+		return new ThreeTenKTree<E>(ThreeTenMappedSlotStore.open(file, codec, k));
+	}
+
+	/**
+	 * write every change of a tree from open() to its files. Does nothing for other trees.
+	 * O(m + h) where m is the number of dirty pages and h the number of levels.
+	 */
+	public void force() {
+		if(mapped != null){
+			mapped.setLevelCounts(levelCount);
+			mapped.force();
+		}
+	}
+
+	/**
+	 * immutable point-in-time view of the tree.
+	 * O(1) plus O(h) where h is the number of levels; storage pages are shared and
+	 * copied by this tree only when it writes to them while the snapshot is open.
+	 * The index pages are shared the same way.
+	 * @return the snapshot, close() it when done; null if this tree is itself a snapshot or from open()
+	 */
+	public ThreeTenKTree<E> snapshot() {
+		if(readOnly || mapped != null){
+			return null;
+		}
+		return new ThreeTenKTree<E>(this);
+	}
+
+	/**
+	 * release a snapshot, so the live tree stops copying the pages it held.
+	 * force() and close the files of a tree from open(); does nothing on other live trees.
+	 */
+	@Override
+	public void close() {
+		force();
+		storage.close();
+		if(indexMap != null){
+			indexMap.close();
+		}
+	}
+
+	/**
+	 * storage index of a value, looked up in the index this tree uses.
+	 * O(1) assuming hash table search is O(1).
+	 * @param value a non-null value
+	 * @return its index, -1 if not present
+	 */
+	private int indexOf(E value) {
+		if(mapped != null){
+			return mapped.indexOf(value);
+		}
+		return indexMap.getInt(value, -1);
+	}
+
 	/**
 	 * getter for branchK, which is number of children a node can have the most.
 	 * O(1).
@@ -83,11 +291,11 @@ public class ThreeTenKTree<E> {
 	 * @return numbers of nodes of a perfect tree of the current height.
 	 */
 	public int capacity(){
-		return storage.length; 
+		return storage.length(); 
 	}
 	
 	/**
-	 * report the tree height.
+	 * report the tree height, the deepest level that holds a node.
 	 * O(1).
 	 * @return the treeHeight
 	 */
@@ -99,89 +307,40 @@ public class ThreeTenKTree<E> {
 	 * set value at the specified index.
 	 * either add or remove. Remove when value is null.
 	 * remove a leaf node only.
+	 * duplicate values are found through indexMap, not by scanning storage.
 	 * @param index where we want to store the node in storage array
 	 * @param value value of the node
 	 * @return true if successfully set, otherwise false
 	 */
-	@SuppressWarnings("unchecked")
 	public boolean set(int index, E value) {
 		// Set value at index in tree storage.
 		// If value is null, this method attempts to remove a (leaf) node.
+		if(readOnly){//snapshots never change
+			return false;
+		}
 		if(value == null){
 			//If index is not valid or the given index does not have a node, 
 			//no change to tree and return false;
-			if((index < 0) || (index >= capacity()) || (storage[index] == null)){
+			if((index < 0) || (index >= capacity()) || (storage.get(index) == null)){
 				return false;
 			}
 			//If node at given index has any child, do not remove but return false;
-			//Check if the passed in node is a leaf
-			for(int i = 1; i <= branchK; i++){
-				int child = (branchK * index) + i;
-				if(child >= capacity()){//means no child
-					break;
-				}
-				if(storage[child] != null){// find one child, return false
-					return false;
-				}
-			}//loop exits mean no child --> leaf node
-
-			//Before remove the node, we need to check if the node at the index 
-			//has siblings, so we can adjust the tree height
-			int sibling = 0;
-			int root = 0; //root index
-			int leftMost = 0;
-			int leftMost2 = 0;
-			boolean run = true;
-			
-			while(run){//this loop find leftMost and leftMost2
-				leftMost = (branchK * root) + 1;//to get leftmost node index
-				leftMost2 = (branchK * leftMost) + 1;
-				//must in the range
-				if((index >= leftMost) && (index < leftMost2)){
-					break;
-				}
-				root = leftMost;
-			}
-			/*now checking sibling nodes*/
-			if(index == leftMost){
-				for(int i = index; i < leftMost2; i++){
-					if(storage[i] != null){
-						sibling = 1;
-						break;
-					}
-				}
-			}
-			else if((index > leftMost) && (index < (leftMost2-1))){
-				for(int i = index+1; i < leftMost2; i++){
-					if(storage[i] != null){
-						sibling = 1;
-						break;
-					}
-				}
-				if(sibling == 0){
-					for(int i = index-1; i >= leftMost; i--){
-						if(storage[i] != null){
-							sibling = 1;
-							break;
-						}
-					}
-				}
-			}
-			else if(index == (leftMost2 - 1)){
-				for(int i = index-1; i >= leftMost; i--){
-					if(storage[i] != null){
-						sibling = 1;
-						break;
-					}
-				}
+			if(hasChild(index)){
+				return false;
 			}
-			if(sibling == 0){
+
+			//the height drops when the node was the last one on the deepest level
+			levelCount[levelOf(index)]--;
+			while((treeHeight > 0) && (levelCount[treeHeight] == 0)){
 				treeHeight--;
 			}
 			//remove the node and return true.
-			indexMap.remove(storage[index]);//update hash table
-			storage[index] = value;	
+			if(indexMap != null){//a mapped store updates its own index
+				indexMap.removeInt(storage.get(index), -1);//update hash table
+			}
+			storage.set(index, value);	
 			size--;
+			checkSparse();
 			return true;	
 		}
 
@@ -193,144 +352,122 @@ public class ThreeTenKTree<E> {
 		// - If adding this node would make the tree invalid, no change and return false.
 		// See examples in main() below for different cases.
 		// Remember to update the hash table if tree is updated.
-	
-		if(value != null){
-			int sibling = 0;
-			int root = 0; //root index
-			int leftMost = 0;
-			int leftMost2 = 0;
-			boolean run = true;
-			if(index < 0){
-				return false;
+		if(index < 0){
+			return false;
+		}
+		/*to check if the value already exists in the tree*/
+		if(indexOf(value) != -1){
+			return false;
+		}
+		if((index < capacity()) && (storage.get(index) != null)){//replace
+			if(indexMap != null){
+				indexMap.removeInt(storage.get(index), -1);
 			}
-			/*to check if the value already exists in the tree*/
-			for(int i = 0; i < capacity(); i++){	
-				if(storage[i] == null){
-					continue;
-				}
-				if(storage[i].equals(value)){
-					return false;
-				}
+			storage.set(index, value);
+			if(indexMap != null){
+				indexMap.putInt(value, index, -1);
 			}
-			
-			if(index < capacity()){
-				if(storage[index] != null){//replace
-					indexMap.remove(storage[index]);
-					storage[index] = value;
-					indexMap.put(value, index);
-					
-				}
-				else{				
-					int parent = (index - 1)/branchK;
-					if(index == 0){
-						storage[index] = value;
-						indexMap.put(value, index);
-						size++;
-					}
-					else if((storage[parent] == null) && (index != 0)){/*no parent so cannot add child*/
-						return false;							  
-					}
-					else{
-						storage[index] = value;
-						indexMap.put(value, index);//update hashMap
-						size++;//keep track # of nodes
-					}
-					// we need to check if the node at the index 
-					//has siblings, so we can adjust the tree height
-	
-					if(index == 0){
-						treeHeight = 0;
-						return true;
-					}
-					while(run){//this loop find leftMost and leftMost2
-						leftMost = (branchK * root) + 1;//to get leftmost node index
-						leftMost2 = (branchK * leftMost) + 1;
-						//must in the range
-						if((index >= leftMost) && (index < leftMost2)){
-							break;
-						}
-						root = leftMost;
-					}
-					/*now checking sibling nodes*/
-					if(index == leftMost){//index is the leftmost node in the level
-						for(int i = index+1; i < leftMost2; i++){
-							if(storage[i] != null){
-								sibling = 1;
-								break;
-							}
-						}
-					}
-					else if((index > leftMost) && (index < (leftMost2-1))){/*somewhere in the middle of the level*/
-						for(int i = index+1; i < leftMost2; i++){
-							if(storage[i] != null){
-								sibling = 1;
-								break;
-							}
-						}
-						if(sibling == 0){
-							for(int i = index-1; i >= leftMost; i--){
-								if(storage[i] != null){
-									sibling = 1;
-									break;
-								}
-							}
-						}
-					}
-					else if(index == (leftMost2 - 1)){//index is the rightmost node in the level
-						for(int i = index-1; i >= leftMost; i--){
-							if(storage[i] != null){
-								sibling = 1;
-								break;
-							}
-						}
-					}
-					if(sibling == 0){
-						treeHeight++;
-					}
-				}
+			return true;
+		}
+		if(index != 0){
+			int parent = (index - 1)/branchK;
+			if((parent >= capacity()) || (storage.get(parent) == null)){/*no parent so cannot add child*/
+				return false;
 			}
-			else if(index >= capacity()){
-				int countNode = 0;
-				leftMost = 0;//to get leftmost node index
-				leftMost2 = (branchK * leftMost) + 1;
-				while(run){//this loop find leftMost and leftMost2
-					//must in the range
-					if((index >= leftMost) && (index < leftMost2)){
-						break;
-					}
-					leftMost = (branchK * root) + 1;//to get leftmost node index
-					leftMost2 = (branchK * leftMost) + 1;
-					root = leftMost;
-				}
-				
-				/*adding new level for the tree*/
-				for(int i = leftMost; i < leftMost2; i++){		
-					countNode++;/*# of nodes in last level*/
-				}
-				/*to get # of nodes with new last level*/
-				int newSize = capacity() + countNode;
-				E[] newStorage = (E[]) new Object[newSize];/*new array with 1 more level added*/
-				for(int i = 0; i < capacity(); i++){/*transferring elements to new array*/
-					newStorage[i] = storage[i];
-				}
-				storage = newStorage;	
-				/*if node at the index is a child of other node*/
-				/*so we can add the child node into the tree*/
-				int parent = (index-1)/branchK;
-				if(storage[parent] == null){/*no parent node, so we cannot add child node*/
-					return false;
-				}
-				else{
-					storage[index] = value;
-					indexMap.put(value, index);//update hashmap
-					size++;
-				}
-				treeHeight++;		
+		}
+		int level = levelOf(index);
+		if(index >= capacity()){
+			/*adding new level for the tree*/
+			if(levelStart[level + 1] > Integer.MAX_VALUE - 8){//larger than any array
+				return false;
+			}
+			if(mapped != null){//do not grow the files for a value the codec refuses
+				mapped.check(value);
 			}
+			storage.grow((int)levelStart[level + 1]);
+		}
+		storage.set(index, value);
+		if(indexMap != null){
+			indexMap.putInt(value, index, -1);//update hashMap
+		}
+		size++;//keep track # of nodes
+		levelCount[level]++;
+		if(level > treeHeight){
+			treeHeight = level;
+		}
+		if(index >= SPARSE_MIN_CAPACITY){//only a new deep node can make the tree sparse
+			checkSparse();
 		}
 		return true;
 	}
 
+	/**
+	 * move storage to the sparse store if the fill ratio is below sparseThreshold.
+	 * The tree stays sparse afterwards, so memory follows the node count, not k^height.
+	 * O(n) where n is the size of the tree when it switches, O(1) otherwise.
+	 */
+	private void checkSparse() {
+		if((storage instanceof ThreeTenSparseSlotStore) || (mapped != null) || (capacity() < SPARSE_MIN_CAPACITY)
+			|| ((double)size / capacity() >= sparseThreshold)){
+			return;
+		}
+		ThreeTenSparseSlotStore<E> sparse = new ThreeTenSparseSlotStore<E>(capacity(), size);
+		for(int i : storage.occupied()){
+			sparse.set(i, storage.get(i));
+		}
+		storage = sparse;
+	}
+
+	/**
+	 * set the fill ratio below which the tree moves to sparse storage.
+	 * 0 keeps the tree dense.
+	 * @param threshold ratio of nodes to capacity, in [0, 1)
+	 * @return false w/o changing anything if threshold is out of range or this is a snapshot; otherwise true
+	 */
+	public boolean setSparseThreshold(double threshold) {
+		if(readOnly || threshold < 0 || threshold >= 1){
+			return false;
+		}
+		sparseThreshold = threshold;
+		checkSparse();
+		return true;
+	}
+
+	/**
+	 * O(1).
+	 * @return true if the tree uses the sparse store
+	 */
+	public boolean isSparse() {
+		return storage instanceof ThreeTenSparseSlotStore;
+	}
+
+	/**
+	 * check the contiguous child range of a node in one occupancy query.
+	 * O(K / 64) where K is the branching factor.
+	 * @param index storage index of the node
+	 * @return true if the node has at least one child
+	 */
+	private boolean hasChild(int index) {
+		long first = (long)branchK * index + 1;
+		if(first >= capacity()){//means no child
+			return false;
+		}
+		int end = (int)Math.min(first + branchK, capacity());
+		return storage.nextOccupied((int)first, end) != -1;
+	}
+
+	/**
+	 * find the level of a storage index from the closed-form level offsets.
+	 * level L starts at index (k^L - 1)/(k - 1).
+	 * O(log h) where h is the number of levels.
+	 * @param index index in storage
+	 * @return level of the index, 0 for the root
+	 */
+	private int levelOf(int index) {
+		int pos = Arrays.binarySearch(levelStart, index);
+		return (pos >= 0) ? pos : -pos - 2;
+	}
+
 	/**
 	 * get the node at specified index of the tree(storage array).
 	 * O(1).
@@ -341,10 +478,10 @@ public class ThreeTenKTree<E> {
 		if((index < 0) || (index >= capacity())){
 			return null;
 		}
-		if(storage[index] == null){
+		if(storage.get(index) == null){
 			return null;
 		}
-		return storage[index]; 
+		return storage.get(index); 
 	}
 
 	/**
@@ -366,12 +503,9 @@ public class ThreeTenKTree<E> {
 		// toStringLevelOrder() should return "A B C D E"
 		StringBuilder string = new StringBuilder();
 		boolean treeNull = false;
-		for(int i = 0; i < capacity(); i++){
-			if(storage[i] == null){
-				continue;
-			}
+		for(int i : storage.occupied()){//bitmap scan when dense, sorted keys when sparse
 			treeNull = true;
-			string.append(storage[i]);
+			string.append(storage.get(i));
 			string.append(" ");
 		}
 		if(treeNull == true){
@@ -402,14 +536,14 @@ public class ThreeTenKTree<E> {
 		//
 		// toString() should return "A\nB C\nD null E null"
 		StringBuilder string = new StringBuilder();
-		string.append(storage[0]);
+		string.append(storage.get(0));
 		string.append("\n");
 
 		int root = 0; //root index
 		int leftMost = 0;
 		int leftMost2 = 0;
 		boolean run = true;
-		if(storage[0] == null){
+		if(storage.get(0) == null){
 			return "";
 		}
 		while(run){//this loop find leftMost and leftMost2
@@ -421,7 +555,7 @@ public class ThreeTenKTree<E> {
 			}
 			if(leftMost < capacity()){
 				for(int i = leftMost; i < leftMost2; i++){//loop the same level
-					string.append(storage[i]);
+					string.append(storage.get(i));
 					string.append(" ");
 				}
 				/*to trim the space at the end to make sure there is no space at the end of the string*/
@@ -437,6 +571,48 @@ public class ThreeTenKTree<E> {
 		return string.toString().trim();//trim() to truncate newline at the end of the string
 	}
 
+	/**
+	 * Find the node of the given value and return the storage indexes on its path.
+	 * the path starts at the root and ends with the node itself.
+	 * O(height) assuming hash table search is O(1).
+	 * @param value the node will be used to check its ancestors
+	 * @return indexes from the root down to the node, null if value is not present
+	 */
+	public int[] getAncestorIndexes(E value){
+		if(value == null){
+			return null;
+		}
+		int index = indexOf(value);
+		if(index == -1){
+			return null;//value is not present
+		}
+		int[] path = new int[levelOf(index) + 1];
+		for(int i = path.length - 1; i >= 0; i--){//walk up to the root
+			path[i] = index;
+			index = (index - 1)/branchK;
+		}
+		return path;
+	}
+
+	/**
+	 * Find the node of the given value and return the values on its path.
+	 * the path starts at the root and ends with the node itself.
+	 * O(height) assuming hash table search is O(1).
+	 * @param value the node will be used to check its ancestors
+	 * @return values from the root down to the node, null if value is not present
+	 */
+	public java.util.List<E> getAncestorValues(E value){
+		int[] path = getAncestorIndexes(value);
+		if(path == null){
+			return null;
+		}
+		java.util.List<E> values = new java.util.ArrayList<E>(path.length);
+		for(int index : path){
+			values.add(storage.get(index));
+		}
+		return values;
+	}
+
 	/**
 	 * Find the node of the given value and return the ancestors of the node in a string.
 	 * if value not present, return null.
@@ -447,50 +623,18 @@ public class ThreeTenKTree<E> {
 	 * @return a string including all the ancestors and the node itself. Otherwise, return null
 	 */
 	public String getAncestors(E value){
-		int index = 0;
-		int parent = 0;
-		int present = 0;
-		String string = null;
-		StringBuilder tempString = new StringBuilder();	
-		if(value == null){
-			return null;
-		}
-		/*find the node of the given value*/
-		for(int i = 0; i < capacity(); i++){
-			if(storage[i] == null){
-				continue;
-			}
-			if(storage[i].equals(value)){
-				present = 1;
-				index = i;
-				break;
-			}
-		}
-		if(present == 0){
+		int[] path = getAncestorIndexes(value);
+		if(path == null){
 			return null;//value is not present
 		}
-		if(index == 0){//root node, so no ancestors
-			return (tempString.append(storage[index])).toString();
-		}
-		tempString.append(storage[index]);
-		tempString.append(">--");
-		for(int i = 0; i < treeHeight; i++){
-			parent = (index - 1)/branchK;
-			if(parent < 0){
-				break;
-			}
-			else if(parent == 0){//root node
-				tempString.append(storage[parent]);
-				break;
-			}
-			else if(indexMap.get(storage[parent]) == parent){//search hash table
-				tempString.append(storage[parent]);
-				tempString.append(">--");
+		StringBuilder string = new StringBuilder();
+		for(int i = 0; i < path.length; i++){
+			if(i > 0){
+				string.append("-->");
 			}
-			index = parent;
+			string.append(storage.get(path[i]));
 		}
-		string = (tempString.reverse()).toString();
-		return string; 	
+		return string.toString();
 	}
 
 
@@ -498,45 +642,30 @@ public class ThreeTenKTree<E> {
 	 * Find the node of the given value and return the children of the node in a string.
 	 * if value not present, return null.
 	 * if the node is a leaf, return an empty string.
-	 * O(K) where K is the branch factor assuming hash table search is O(1).
+	 * O(K / 64 + c) where K is the branch factor and c the number of children, assuming hash table search is O(1).
 	 * @param value the node is used to check its children
 	 * @return string should include all children, from left to right, and separated by a single space
 	 */
 	public String getChildren(E value){
 		int index = 0;
-		int present = 0;
 		StringBuilder string = new StringBuilder();
 		if(value == null){
 			return null;
 		}
-		for(int i = 0; i < capacity(); i++){//find the node of given value
-			if(storage[i] == null){
-				continue;
-			}
-			if(storage[i].equals(value)){
-				present = 1;
-				index = i;
-				break;
-			}
-		}
-		if(present == 0){//value not present
+		index = indexOf(value);//find the node of given value
+		if(index == -1){//value not present
 			return null;
 		}
-		if(isLeaf(value)){
+		long first = (long)branchK * index + 1;
+		if(first >= capacity()){//leaf
 			return "";
 		}
-		for(int i = 1; i <= branchK; i++){//putting children into string
-			int child = (branchK * index) + i;
-			if(child >= capacity()){
-				break;
-			}
-			if(indexMap.get(storage[child]) == null){
-				continue;
-			}
-			else if(indexMap.get(storage[child]) == child){//search hash Map
-				string.append(storage[child]);
-				string.append(" ");
-			}
+		int end = (int)Math.min(first + branchK, capacity());
+		//putting children into string, jumping over empty child slots
+		for(int child = storage.nextOccupied((int)first, end); child != -1;
+			child = storage.nextOccupied(child + 1, end)){
+			string.append(storage.get(child));
+			string.append(" ");
 		}
 		/*to trim the space at the end to make sure there is no space at the end of the string*/
 		if((string.length() > 0)){
@@ -558,7 +687,7 @@ public class ThreeTenKTree<E> {
 		if(value == null){
 			return false;
 		}
-		if(indexMap.get(value) == null){//value(key)
+		if(indexOf(value) == -1){//value(key)
 			return false;
 		}
 		return true; 
@@ -567,7 +696,7 @@ public class ThreeTenKTree<E> {
 	/**
 	 * check if a node is a leaf node.
 	 * If node at given index has any child, do not remove and return false.
-	 * O(K) where K is the branching factor assuming hash table search is O(1).
+	 * O(K / 64) where K is the branching factor assuming hash table search is O(1).
 	 * @param value will be used to check if this node is a leaf
 	 * @return true if a leaf node has value; false otherwise
 	 */
@@ -581,17 +710,8 @@ public class ThreeTenKTree<E> {
 			return false;
 		}	
 		
-		index = indexMap.get(value);
-		for(int i = 1; i <= branchK; i++){//checking children for the node at the index
-			int child = (branchK * index) + i;
-			if((child >= capacity())){
-				return true;
-			}
-			if((storage[child] != null) ){
-				return false;//not a leaf node, it has children
-			}
-		}
-		return true;
+		index = indexOf(value);
+		return !hasChild(index);//checking children for the node at the index
 	}
 	
 	/**
@@ -608,7 +728,7 @@ public class ThreeTenKTree<E> {
 			return false;
 		}
 		if(isLeaf(value)){
-			index = indexMap.get(value);
+			index = indexOf(value);
 		}
 		else{
 			return false;
@@ -630,13 +750,13 @@ public class ThreeTenKTree<E> {
 			return null;
 		}
 
-		int parentIndex = indexMap.get(root.getValue());
-		int childIndex = (branchK * parentIndex) + 1;
+		int parentIndex = indexOf(root.getValue());
+		long first = (long)branchK * parentIndex + 1;//no int overflow on a deep sparse tree
 
 		FcnsTreeNode<E> child = null;
-		if(childIndex < capacity()){
-			if(storage[childIndex] != null){
-				child = new FcnsTreeNode<E>(storage[childIndex]);
+		if(first < capacity()){
+			if(storage.get((int)first) != null){
+				child = new FcnsTreeNode<E>(storage.get((int)first));
 				root.setChild(helpCreate(child));
 			}
 		}
@@ -646,11 +766,11 @@ public class ThreeTenKTree<E> {
 		FcnsTreeNode<E> currentNode = root.getChild();
 		for(int i = 2; i <= branchK; i++){
 			child = null;
-			childIndex = (branchK * parentIndex)+ i;
+			long childIndex = first + i - 1;
 
 			if(childIndex < capacity()){
-				if(storage[childIndex] != null){
-					child = new FcnsTreeNode<E>(storage[childIndex]);
+				if(storage.get((int)childIndex) != null){
+					child = new FcnsTreeNode<E>(storage.get((int)childIndex));
 				}
 				if(currentNode == null){
 					root.setChild(helpCreate(child));
@@ -680,7 +800,7 @@ public class ThreeTenKTree<E> {
 		//for this k-ary tree and return the root node of the FCNS tree.
 		//Consider helper methods; consider a recursive approach.
 		//O(N) where N is the size of the current K-ary tree.
-		FcnsTreeNode<E> root = new FcnsTreeNode<E>(ktree.storage[0]);
+		FcnsTreeNode<E> root = new FcnsTreeNode<E>(ktree.storage.get(0));
 		return ktree.helpCreate(root);
 	}
 	//-------------------------------------------------------------
@@ -691,8 +811,9 @@ public class ThreeTenKTree<E> {
 	/**
 	 * for testing purposes.
 	 * @param args command line arguments
+	 * @throws java.io.IOException if the temporary tree files cannot be used
 	 */
-	public static void main(String[] args) {
+	public static void main(String[] args) throws java.io.IOException {
 
 		ThreeTenKTree<Integer> t;
 		t = new ThreeTenKTree<>(7, 2);
@@ -797,6 +918,136 @@ public class ThreeTenKTree<E> {
 			System.out.println("Yay8");						
 		
 		}
+
+		//height follows the deepest level, removing the root leaves an empty tree
+		if (t.remove(11) && t.height() == 2 && t.remove(5) && t.height() == 1 && t.remove(2)
+			&& t.height() == 0 && t.remove(0) && t.size() == 0 && t.height() == 0
+			&& t.set(0, 0) && t.size() == 1 && !t.set(40, 40) && t.capacity() == 15){
+			System.out.println("Yay9");
+		}
+
+		//a single path of depth 9 in a 4-ary tree leaves almost every slot empty
+		ThreeTenKTree<Integer> path = new ThreeTenKTree<>(1, 4);
+		int slot = 0;
+		boolean built = path.set(0, 0);
+		for(int d = 1; d <= 9 && built; d++){
+			slot = 4 * slot + 4;//rightmost child
+			built = path.set(slot, d);
+		}
+		if (built && path.isSparse() && path.height() == 9 && path.capacity() == 349525 && path.get(slot) == 9
+			&& path.has(9) && path.getChildren(8).equals("9") && path.getAncestors(2).equals("0-->1-->2")
+			&& path.toStringLevelOrder().equals("0 1 2 3 4 5 6 7 8 9") && path.remove(9) && path.get(slot) == null
+			&& !t.isSparse()){
+			System.out.println("Yay10");
+		}
+
+		//ancestor path as indexes and values, multi-character labels stay intact
+		ThreeTenKTree<String> names = new ThreeTenKTree<>(1, 3);
+		names.set(0, "root");
+		names.set(3, "right");
+		names.set(11, "leaf12");
+		if (java.util.Arrays.equals(names.getAncestorIndexes("leaf12"), new int[] {0, 3, 11})
+			&& names.getAncestorValues("right").equals(java.util.Arrays.asList("root", "right"))
+			&& names.getAncestors("leaf12").equals("root-->right-->leaf12")
+			&& names.getAncestors("root").equals("root") && names.getAncestorIndexes("none") == null){
+			System.out.println("Yay11");
+		}
+
+		//bulk level-order load matches set() one token at a time
+		java.util.List<Integer> tokens = java.util.Arrays.asList(0, null, 2, 3, null, 5, 6, 2, 8, null, null, null, 12);
+		ThreeTenKTree<Integer> bulk = new ThreeTenKTree<>(tokens, 2);
+		ThreeTenKTree<Integer> oneByOne = new ThreeTenKTree<>(1, 2);
+		for(int i = 0; i < tokens.size(); i++){
+			if(tokens.get(i) != null){
+				oneByOne.set(i, tokens.get(i));
+			}
+		}
+		if (bulk.toString().equals(oneByOne.toString()) && bulk.size() == 5 && bulk.height() == 3
+			&& bulk.capacity() == 15 && bulk.getAncestors(12).equals("0-->2-->5-->12") && !bulk.has(3)
+			&& bulk.size() == oneByOne.size() && bulk.height() == oneByOne.height()
+			&& new ThreeTenKTree<Integer>(java.util.Arrays.asList((Integer)null), 3).size() == 0){
+			System.out.println("Yay12");
+		}
+
+		//snapshot keeps its point-in-time view while the live tree changes
+		ThreeTenKTree<Integer> live = new ThreeTenKTree<>(7, 2);
+		for(int i = 0; i < 7; i++){
+			live.set(i, i);
+		}
+		ThreeTenKTree<Integer> snap = live.snapshot();
+		String before = snap.toString();
+		String fcnsBefore = createFcnsTree(snap).toStringLevelOrder();
+		live.set(3, 30);
+		live.remove(6);
+		live.set(7, 7);
+		if (snap.toString().equals(before) && snap.has(3) && !snap.has(30) && snap.has(6) && !snap.has(7)
+			&& snap.getAncestors(6).equals("0-->2-->6") && snap.height() == 2 && snap.size() == 7
+			&& createFcnsTree(snap).toStringLevelOrder().equals(fcnsBefore) && !snap.set(1, 10) && !snap.remove(6)
+			&& snap.snapshot() == null && live.has(30) && !live.has(6) && live.height() == 3
+			&& live.getAncestors(7).equals("0-->1-->30-->7")){
+			System.out.println("Yay13");
+		}
+		snap.close();
+
+		//a tree in memory-mapped files survives close() and open()
+		java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("ktree");
+		java.nio.file.Path file = dir.resolve("tree");
+		ThreeTenKTree<String> disk = ThreeTenKTree.open(file, ThreeTenValueCodec.strings(8), 3);
+		for(int i = 0; i < 40; i++){
+			disk.set(i, "n" + i);
+		}
+		disk.set(39, null);
+		disk.set(4, "four");
+		String before2 = disk.toString();
+		String fcns = createFcnsTree(disk).toStringLevelOrder();
+		boolean same = disk.snapshot() == null && !disk.isSparse() && disk.height() == 3 && disk.size() == 39;
+		disk.close();
+		ThreeTenKTree<String> again = ThreeTenKTree.open(file, ThreeTenValueCodec.strings(8), 3);
+		if (same && again.toString().equals(before2) && again.size() == 39 && again.height() == 3
+			&& again.getAncestors("n38").equals("n0-->n3-->n12-->n38") && again.getChildren("four").equals("n13 n14 n15")
+			&& !again.has("n4") && !again.set(40, "four") && again.set(40, "n40") && again.remove("n40")
+			&& createFcnsTree(again).toStringLevelOrder().equals(fcns)){
+			System.out.println("Yay14");
+		}
+
+		//a value the codec refuses neither grows the files nor breaks the index
+		int cap = again.capacity();
+		int refused = 0;
+		for(int index : new int[] {4, 40}){
+			try{
+				again.set(index, "longer than eight");
+			}
+			catch(IllegalArgumentException e){
+				refused++;
+			}
+		}
+		if (refused == 2 && again.capacity() == cap && again.size() == 39 && again.get(4).equals("four")
+			&& again.has("four") && !again.set(5, "four")){
+			System.out.println("Yay15");
+		}
+
+		//child indexes of a deep sparse tree pass the int range without wrapping around
+		boolean fcnsOk = true;
+		for(int last = 1; last <= 4; last += 3){//leftmost and rightmost single path
+			ThreeTenKTree<Integer> deep = new ThreeTenKTree<>(1, 4);
+			StringBuilder expect = new StringBuilder("0");
+			int at = 0;
+			deep.set(0, 0);
+			for(int level = 1; level <= 15; level++){
+				at = 4 * at + last;
+				deep.set(at, level);
+				expect.append(" ").append(level);
+			}
+			fcnsOk = fcnsOk && deep.isSparse() && deep.capacity() == 1431655765 && deep.size() == 16
+				&& createFcnsTree(deep).toStringLevelOrder().equals(expect.toString());
+		}
+		if (fcnsOk){
+			System.out.println("Yay16");
+		}
+		again.close();
+		java.nio.file.Files.delete(file);
+		java.nio.file.Files.delete(java.nio.file.Paths.get(file + ".idx"));
+		java.nio.file.Files.delete(dir);
 	}
 }
 
@@ -0,0 +1,249 @@
+/**
+ * k-ary tree of distinct long values, without boxing.
+ * Same set/get/has/isLeaf/getAncestors/getChildren/remove rules as ThreeTenKTree&lt;Long&gt;;
+ * since an int cannot be null, clear(index) removes by index and get takes the value to
+ * return for an empty slot. About 14 bytes per node instead of about 40.
+ * @author Phat Tran
+ */
+public class ThreeTenLongKTree extends ThreeTenPrimitiveKTree {
+
+	/**
+	 * value of each slot, meaningful where the slot is occupied.
+	 */
+	private long[] values;
+
+	/**
+	 * Constructor.
+	 * @param length length of the storage array
+	 * @param k numbers of children a node can have the most
+	 */
+	public ThreeTenLongKTree(int length, int k) {
+		super(length, k);
+		values = new long[capacity()];
+	}
+
+	/**
+	 * O(1).
+	 * @param value a value
+	 * @return its spread hash
+	 */
+	private static int hash(long value) {
+		return ThreeTenHashTable.spread((int)(value ^ (value >>> 32)));
+	}
+
+	/**
+	 * find the index entry of a value.
+	 * Average case: O(1).
+	 * @param value value to look up
+	 * @return entry pointing at the value's slot, or the empty entry where it would go
+	 */
+	private int find(long value) {
+		int entry = home(hash(value));
+		for(int slot = slotAt(entry); slot != -1 && values[slot] != value; slot = slotAt(entry)){
+			entry = nextEntry(entry);
+		}
+		return entry;
+	}
+
+	@Override
+	protected int hashAt(int slot) {
+		return hash(values[slot]);
+	}
+
+	@Override
+	protected void resizeValues(int length) {
+		values = java.util.Arrays.copyOf(values, length);
+	}
+
+	@Override
+	protected void appendValue(StringBuilder string, int slot) {
+		string.append(values[slot]);
+	}
+
+	@Override
+	protected int entryOf(int slot) {
+		return find(values[slot]);
+	}
+
+	/**
+	 * bytes used by the value array, the bitmap and the index.
+	 * O(1).
+	 * @return the footprint, not counting object headers
+	 */
+	public long footprint() {
+		return footprint(8);
+	}
+
+	/**
+	 * set value at the specified index: add a node, or replace the value of one.
+	 * O(1) assuming hash table operations are O(1), O(n) when a level is added.
+	 * @param index where we want to store the node in storage array
+	 * @param value value of the node
+	 * @return false w/o changing anything if value is already in tree or the node would
+	 * 		have no parent; otherwise true
+	 */
+	public boolean set(int index, long value) {
+		int entry = find(value);
+		if(slotAt(entry) != -1){//value already in tree
+			return false;
+		}
+		if(isOccupied(index)){//replace
+			replacing(index);
+			values[index] = value;
+			replaced(index, find(value));
+			return true;
+		}
+		if(!canAdd(index)){
+			return false;
+		}
+		values[index] = value;
+		added(index, entry);
+		return true;
+	}
+
+	/**
+	 * get the node at specified index of the tree.
+	 * O(1).
+	 * @param index index of the node
+	 * @param missing value to return for an invalid index or an empty slot
+	 * @return the node's value, or missing
+	 */
+	public long get(int index, long missing) {
+		return isOccupied(index) ? values[index] : missing;
+	}
+
+	/**
+	 * O(1) assuming hash table search is O(1).
+	 * @param value a value
+	 * @return storage index of the node holding value, -1 if not present
+	 */
+	public int indexOf(long value) {
+		return slotAt(find(value));
+	}
+
+	/**
+	 * Determine if value is in tree or not.
+	 * O(1) assuming hash table search is O(1).
+	 * @param value node is used to check if there is this node in the tree
+	 * @return true if a tree node has value; false otherwise.
+	 */
+	public boolean has(long value) {
+		return indexOf(value) != -1;
+	}
+
+	/**
+	 * check if a node is a leaf node.
+	 * O(K / 64) where K is the branching factor, assuming hash table search is O(1).
+	 * @param value will be used to check if this node is a leaf
+	 * @return true if a leaf node has value; false otherwise
+	 */
+	public boolean isLeaf(long value) {
+		return isLeafSlot(indexOf(value));
+	}
+
+	/**
+	 * Remove value from tree if value is in a leaf node.
+	 * O(K / 64) where K is the branching factor, assuming hash table operations are O(1).
+	 * @param value will be removed
+	 * @return true if value if a leaf. Otherwise, false
+	 */
+	public boolean remove(long value) {
+		int index = indexOf(value);
+		return (index != -1) && clear(index);
+	}
+
+	/**
+	 * children of the node with the given value, from left to right.
+	 * O(K / 64 + c) where K is the branching factor and c the number of children.
+	 * @param value the node is used to check its children
+	 * @return children separated by a single space, empty for a leaf, null if value is not present
+	 */
+	public String getChildren(long value) {
+		return childrenOf(indexOf(value));
+	}
+
+	/**
+	 * ancestors of the node with the given value, from the root down, separated by "-->".
+	 * O(height) assuming hash table search is O(1).
+	 * @param value the node will be used to check its ancestors
+	 * @return a string including all the ancestors and the node itself, null if value is not present
+	 */
+	public String getAncestors(long value) {
+		return ancestorsOf(indexOf(value));
+	}
+
+	/**
+	 * bulk-load a tree from level-order values, like ThreeTenKTree(List, int).
+	 * values without a parent or already in the tree are skipped.
+	 * O(n) where n is the number of values, assuming hash table operations are O(1).
+	 * @param tokens node values in level order
+	 * @param present present[i] is false for an empty slot, null when every slot holds a node
+	 * @param k numbers of children a node can have the most
+	 * @return the tree
+	 */
+	public static ThreeTenLongKTree of(long[] tokens, boolean[] present, int k) {
+		ThreeTenLongKTree tree = new ThreeTenLongKTree(1, k);
+		tree.ensureIndex(tokens.length);
+		for(int i = 0; i < tokens.length; i++){
+			if(present == null || present[i]){
+				tree.set(i, tokens[i]);
+			}
+		}
+		return tree;
+	}
+
+	//-------------------------------------------------------------
+	// TESTING CODE
+	//-------------------------------------------------------------
+
+	/**
+	 * for testing purposes.
+	 * @param args command line argument
+	 */
+	public static void main(String[] args) {
+		ThreeTenLongKTree t = new ThreeTenLongKTree(7, 2);
+		long big = 1L << 40;//values past the int range
+
+		//same behavior as ThreeTenKTree<Long>
+		if(t.set(0, big) && t.set(2, big + 2) && t.set(6, big + 6) && t.set(5, 5) && !t.set(3, 3)
+			&& !t.set(1, big + 6) && t.height() == 2 && t.size() == 4
+			&& t.getAncestors(big + 6).equals("1099511627776-->1099511627778-->1099511627782")
+			&& t.getChildren(big + 2).equals("5 1099511627782") && t.getChildren(6) == null && t.isLeaf(5)
+			&& !t.isLeaf(big + 2) && !t.remove(big + 2) && t.remove(big + 6) && !t.has(big + 6) && t.get(6, -1) == -1
+			&& t.set(11, -big) && t.height() == 3 && t.get(11, 0) == -big && t.clear(11) && t.height() == 2) {
+			System.out.println("Yay 1");
+		}
+
+		//matches ThreeTenKTree<Long> on a random workload; values share their low 32 bits
+		java.util.Random rnd = new java.util.Random(7);
+		ThreeTenLongKTree p = new ThreeTenLongKTree(1, 3);
+		ThreeTenKTree<Long> boxed = new ThreeTenKTree<>(1, 3);
+		boolean same = true;
+		for(int i = 0; i < 20000 && same; i++){
+			int index = rnd.nextInt(500);
+			long value = ((long)rnd.nextInt(1000) << 32) | 12345;
+			if(rnd.nextInt(4) == 0){
+				same = p.remove(value) == boxed.remove(value);
+			}
+			else{
+				same = p.set(index, value) == boxed.set(index, value);
+			}
+			same = same && p.size() == boxed.size() && p.height() == boxed.height() && p.has(value) == boxed.has(value)
+				&& java.util.Objects.equals(p.getAncestors(value), boxed.getAncestors(value));
+		}
+		if(same && p.toString().equals(boxed.toString())) {
+			System.out.println("Yay 2");
+		}
+
+		//a perfect tree takes about 14 bytes per node
+		int n = 1398101;//perfect 4-ary tree of height 10
+		long[] tokens = new long[n];
+		for(int i = 0; i < n; i++){
+			tokens[i] = big * i;
+		}
+		ThreeTenLongKTree perfect = ThreeTenLongKTree.of(tokens, null, 4);
+		if(perfect.size() == n && perfect.height() == 10 && perfect.has(big * (n - 1)) && perfect.footprint() < 15L * n) {
+			System.out.println("Yay 3");
+		}
+	}
+}
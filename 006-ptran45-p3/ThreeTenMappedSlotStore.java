@@ -0,0 +1,698 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * persistent tree storage in two memory-mapped files, so a tree bigger than the heap
+ * opens in O(1) and the OS pages in only the slots that are touched.
+ * - the slot file holds one record per slot: a flag byte (1 = occupied) and the value
+ *   in codec.width() bytes.
+ * - the index file holds a header (k, length, count, level counts) and the value to slot
+ *   index: open addressing with linear probing over slot numbers; the key of an entry is
+ *   decoded from the slot file when probing.
+ * Files are mapped in segments of at most 1 GB, so they can grow past 2 GB; a slot record
+ * never straddles two segments. set() writes through to the mapping, force() makes every
+ * change durable.
+ * snapshot() is not supported.
+ * @param <E> takes any data types
+ * @author Phat Tran
+ */
+public class ThreeTenMappedSlotStore<E> implements ThreeTenSlotStore<E> {
+
+	/**
+	 * a file mapped in fixed-size segments.
+	 */
+	private static final class Region {
+
+		/**
+		 * the open file.
+		 */
+		private final FileChannel channel;
+
+		/**
+		 * bytes per segment.
+		 */
+		private final long segmentBytes;
+
+		/**
+		 * mapped segments, the last one may be shorter.
+		 */
+		private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+		/**
+		 * number of bytes mapped.
+		 */
+		private long size;
+
+		/**
+		 * Constructor.
+		 * @param file file to open or create
+		 * @param segmentBytes bytes per segment
+		 * @throws IOException if the file cannot be opened
+		 */
+		private Region(Path file, long segmentBytes) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			this.segmentBytes = segmentBytes;
+			ensure(channel.size());
+		}
+
+		/**
+		 * map at least the given number of bytes, extending the file with zeros.
+		 * O(s) where s is the number of segments.
+		 * @param bytes bytes that must be mapped
+		 */
+		private void ensure(long bytes) {
+			if(bytes <= size){
+				return;
+			}
+			try{
+				int count = (int)((bytes + segmentBytes - 1) / segmentBytes);
+				int first = segments.length;
+				if(first > 0 && segments[first - 1].capacity() < segmentBytes){//the partial last segment grows
+					first--;
+				}
+				segments = java.util.Arrays.copyOf(segments, count);
+				for(int s = first; s < count; s++){
+					long start = s * segmentBytes;
+					segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(segmentBytes, bytes - start));
+				}
+				size = bytes;
+			}
+			catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * O(1).
+		 * @param pos byte position
+		 * @return the segment holding pos
+		 */
+		private ByteBuffer segment(long pos) {
+			return segments[(int)(pos / segmentBytes)];
+		}
+
+		/**
+		 * O(1).
+		 * @param pos byte position
+		 * @return offset of pos inside its segment
+		 */
+		private int offset(long pos) {
+			return (int)(pos % segmentBytes);
+		}
+
+		/**
+		 * O(1).
+		 * @param pos byte position, a multiple of 4
+		 * @return the int there
+		 */
+		private int getInt(long pos) {
+			return segment(pos).getInt(offset(pos));
+		}
+
+		/**
+		 * O(1).
+		 * @param pos byte position, a multiple of 4
+		 * @param value new int
+		 */
+		private void putInt(long pos, int value) {
+			segment(pos).putInt(offset(pos), value);
+		}
+
+		/**
+		 * write mapped changes to the file.
+		 * O(m) where m is the number of dirty pages.
+		 */
+		private void force() {
+			for(MappedByteBuffer segment : segments){
+				segment.force();
+			}
+		}
+
+		/**
+		 * close the file. The mappings stay valid until they are garbage collected.
+		 */
+		private void close() {
+			try{
+				channel.close();
+			}
+			catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * first int of the index file.
+	 */
+	private static final int MAGIC = 0x54543130;
+
+	/**
+	 * bytes before the first index entry.
+	 */
+	private static final int HEADER_BYTES = 4096;
+
+	/**
+	 * header offset of MAGIC.
+	 */
+	private static final int H_MAGIC = 0;
+
+	/**
+	 * header offset of the codec width.
+	 */
+	private static final int H_WIDTH = 4;
+
+	/**
+	 * header offset of the branching factor.
+	 */
+	private static final int H_BRANCH = 8;
+
+	/**
+	 * header offset of length.
+	 */
+	private static final int H_LENGTH = 12;
+
+	/**
+	 * header offset of count.
+	 */
+	private static final int H_COUNT = 16;
+
+	/**
+	 * header offset of indexLength.
+	 */
+	private static final int H_INDEX_LENGTH = 20;
+
+	/**
+	 * header offset of the number of used index entries.
+	 */
+	private static final int H_INDEX_COUNT = 24;
+
+	/**
+	 * header offset of the number of saved level counts.
+	 */
+	private static final int H_LEVELS = 28;
+
+	/**
+	 * header offset of the first saved level count.
+	 */
+	private static final int H_LEVEL_COUNTS = 32;
+
+	/**
+	 * largest mapped segment, one MappedByteBuffer cannot pass 2 GB.
+	 */
+	private static final long SEGMENT_BYTES = 1L << 30;
+
+	/**
+	 * most level counts the header can hold.
+	 */
+	private static final int MAX_LEVELS = 64;
+
+	/**
+	 * the index doubles once it is fuller than this.
+	 */
+	private static final double MAX_LOAD = 0.75;
+
+	/**
+	 * encodes the values.
+	 */
+	private final ThreeTenValueCodec<E> codec;
+
+	/**
+	 * bytes per slot record, the flag byte plus the value.
+	 */
+	private final int recordBytes;
+
+	/**
+	 * one encoded value, so a value the codec refuses fails before a slot changes.
+	 */
+	private final ByteBuffer scratch;
+
+	/**
+	 * the slot records.
+	 */
+	private final Region slots;
+
+	/**
+	 * header and index entries (slot number + 1, 0 for an empty entry).
+	 */
+	private final Region index;
+
+	/**
+	 * number of addressable slots, also kept in the header.
+	 */
+	private int length;
+
+	/**
+	 * number of occupied slots, also kept in the header.
+	 */
+	private int count;
+
+	/**
+	 * number of index entries, also kept in the header.
+	 */
+	private int indexLength;
+
+	/**
+	 * Constructor.
+	 * @param file slot file, the index goes next to it with ".idx" appended
+	 * @param codec encodes the values
+	 * @param k numbers of children a node can have the most, checked against an existing file
+	 * @throws IOException if the files cannot be opened or were written with another codec width or k
+	 */
+	private ThreeTenMappedSlotStore(Path file, ThreeTenValueCodec<E> codec, int k) throws IOException {
+		this.codec = codec;
+		recordBytes = 1 + codec.width();
+		scratch = ByteBuffer.allocate(codec.width());
+		slots = new Region(file, SEGMENT_BYTES / recordBytes * recordBytes);
+		index = new Region(Paths.get(file + ".idx"), SEGMENT_BYTES);
+		if(index.size == 0){//new tree
+			index.ensure(HEADER_BYTES + 4L * 16);
+			index.putInt(H_MAGIC, MAGIC);
+			index.putInt(H_WIDTH, codec.width());
+			index.putInt(H_BRANCH, k);
+			indexLength = 16;
+			index.putInt(H_INDEX_LENGTH, indexLength);
+			grow(1);
+			return;
+		}
+		if(index.getInt(H_MAGIC) != MAGIC || index.getInt(H_WIDTH) != codec.width()
+			|| index.getInt(H_BRANCH) != k){
+			slots.close();
+			index.close();
+			throw new IOException(file + " is not a " + k + "-ary tree of " + codec.width() + "-byte values");
+		}
+		length = index.getInt(H_LENGTH);
+		count = index.getInt(H_COUNT);
+		indexLength = index.getInt(H_INDEX_LENGTH);
+	}
+
+	/**
+	 * open a stored tree, or create an empty one.
+	 * O(s) where s is the number of mapped segments; no slot is read.
+	 * @param <E> value type
+	 * @param file slot file, the index goes next to it with ".idx" appended
+	 * @param codec encodes the values
+	 * @param k numbers of children a node can have the most
+	 * @return the store
+	 * @throws IOException if the files cannot be opened or were written with another codec width or k
+	 */
+	public static <E> ThreeTenMappedSlotStore<E> open(Path file, ThreeTenValueCodec<E> codec, int k) throws IOException {
+		return new ThreeTenMappedSlotStore<E>(file, codec, k);
+	}
+
+	/**
+	 * O(1).
+	 * @return the branching factor stored in the header
+	 */
+	public int branch() {
+		return index.getInt(H_BRANCH);
+	}
+
+	/**
+	 * O(1).
+	 * @return number of addressable slots
+	 */
+	@Override
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * O(1).
+	 * @return number of occupied slots
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * O(1).
+	 * @param slot slot number
+	 * @return byte position of its record
+	 */
+	private long record(int slot) {
+		return (long)slot * recordBytes;
+	}
+
+	/**
+	 * read one slot, paging it in if needed.
+	 * O(w) where w is the codec width.
+	 * @param slot slot index
+	 * @return value in the slot, null if empty
+	 */
+	@Override
+	public E get(int slot) {
+		if(slot < 0 || slot >= length){
+			return null;
+		}
+		long pos = record(slot);
+		ByteBuffer seg = slots.segment(pos);
+		int off = slots.offset(pos);
+		return (seg.get(off) == 0) ? null : codec.decode(seg, off + 1);
+	}
+
+	/**
+	 * O(1).
+	 * @param slot slot index
+	 * @return true if the slot holds a value
+	 */
+	private boolean occupied(int slot) {
+		long pos = record(slot);
+		return slots.segment(pos).get(slots.offset(pos)) != 0;
+	}
+
+	/**
+	 * O(1).
+	 * @param value a value
+	 * @return index entry where probing for value starts
+	 */
+	private int home(E value) {
+		return (int)(((ThreeTenHashTable.spread(value.hashCode()) & 0xffffffffL) * indexLength) >>> 32);
+	}
+
+	/**
+	 * O(1).
+	 * @param entry index entry
+	 * @return slot number + 1 stored there, 0 if empty
+	 */
+	private int entry(int entry) {
+		return index.getInt(HEADER_BYTES + 4L * entry);
+	}
+
+	/**
+	 * O(1).
+	 * @param entry index entry
+	 * @param value slot number + 1, 0 to empty it
+	 */
+	private void setEntry(int entry, int value) {
+		index.putInt(HEADER_BYTES + 4L * entry, value);
+	}
+
+	/**
+	 * find the index entry of a value, decoding the slot of each entry probed.
+	 * Average case: O(w) where w is the codec width.
+	 * @param value value to look up
+	 * @return entry pointing at the value's slot, or the empty entry where it would go
+	 */
+	private int find(E value) {
+		int e = home(value);
+		for(int s = entry(e); s != 0 && !value.equals(get(s - 1)); s = entry(e)){
+			e = (e + 1 == indexLength) ? 0 : e + 1;
+		}
+		return e;
+	}
+
+	/**
+	 * look a value up in the mapped index.
+	 * Average case: O(w) where w is the codec width.
+	 * @param value value to look up
+	 * @return slot holding value, -1 if not present
+	 */
+	public int indexOf(E value) {
+		return (value == null) ? -1 : entry(find(value)) - 1;
+	}
+
+	/**
+	 * encode a value into the scratch buffer without touching the files.
+	 * O(w) where w is the codec width.
+	 * @param value non-null value
+	 * @throws IllegalArgumentException (or whatever the codec throws) if value cannot be encoded
+	 */
+	public void check(E value) {
+		codec.encode(value, scratch, 0);
+	}
+
+	/**
+	 * write one slot and update the index. The value is encoded before anything changes,
+	 * so a value the codec refuses leaves the slot and the index as they were.
+	 * Average case: O(w) where w is the codec width.
+	 * @param slot slot index
+	 * @param value new value, null to empty the slot; must not be stored in another slot
+	 */
+	@Override
+	public void set(int slot, E value) {
+		if(value != null){
+			check(value);
+		}
+		E old = get(slot);
+		if(old != null){
+			removeEntry(find(old));
+		}
+		long pos = record(slot);
+		ByteBuffer seg = slots.segment(pos);
+		int off = slots.offset(pos);
+		if(value == null){
+			if(old != null){
+				seg.put(off, (byte)0);
+				count--;
+				index.putInt(H_COUNT, count);
+			}
+			return;
+		}
+		for(int i = 0; i < scratch.capacity(); i++){//copy the encoded value in
+			seg.put(off + 1 + i, scratch.get(i));
+		}
+		if(old == null){
+			seg.put(off, (byte)1);
+			count++;
+			index.putInt(H_COUNT, count);
+		}
+		setEntry(find(value), slot + 1);
+		int used = index.getInt(H_INDEX_COUNT) + 1;
+		index.putInt(H_INDEX_COUNT, used);
+		if(used > MAX_LOAD * indexLength){
+			rehash(indexLength * 2);
+		}
+	}
+
+	/**
+	 * empty an index entry and shift the rest of its probe chain back.
+	 * Average case: O(w) where w is the codec width.
+	 * @param hole entry to empty
+	 */
+	private void removeEntry(int hole) {
+		int next = hole;
+		while(true){//backward shift deletion
+			next = (next + 1 == indexLength) ? 0 : next + 1;
+			int s = entry(next);
+			if(s == 0){
+				break;
+			}
+			int h = home(get(s - 1));
+			//the entry at next can move into the hole only if its home
+			//is not cyclically inside (hole, next]
+			boolean inRange = (hole <= next) ? (hole < h && h <= next) : (hole < h || h <= next);
+			if(!inRange){
+				setEntry(hole, s);
+				hole = next;
+			}
+		}
+		setEntry(hole, 0);
+		index.putInt(H_INDEX_COUNT, index.getInt(H_INDEX_COUNT) - 1);
+	}
+
+	/**
+	 * rebuild the index with the given number of entries.
+	 * Keeps the old entries on the heap while they are reinserted, 4 bytes each.
+	 * O(n w) where n is the new number of entries and w the codec width.
+	 * @param newLength new number of entries
+	 */
+	private void rehash(int newLength) {
+		int[] old = new int[indexLength];
+		for(int e = 0; e < indexLength; e++){
+			old[e] = entry(e);
+		}
+		index.ensure(HEADER_BYTES + 4L * newLength);
+		indexLength = newLength;
+		index.putInt(H_INDEX_LENGTH, indexLength);
+		for(int e = 0; e < indexLength; e++){
+			setEntry(e, 0);
+		}
+		for(int s : old){
+			if(s != 0){
+				int e = home(get(s - 1));
+				while(entry(e) != 0){
+					e = (e + 1 == indexLength) ? 0 : e + 1;
+				}
+				setEntry(e, s);
+			}
+		}
+	}
+
+	/**
+	 * make the store longer by extending the slot file; the new slots are empty.
+	 * O(s) where s is the number of segments.
+	 * @param newLength new number of slots, ignored if not larger than length()
+	 */
+	@Override
+	public void grow(int newLength) {
+		if(newLength <= length){
+			return;
+		}
+		slots.ensure(record(newLength));
+		length = newLength;
+		index.putInt(H_LENGTH, length);
+	}
+
+	/**
+	 * find the first occupied slot in a range by reading the flag bytes.
+	 * O(r) where r is the length of the range.
+	 * @param from first slot of the range
+	 * @param to end of the range, exclusive
+	 * @return the first occupied slot in [from, to), -1 if there is none
+	 */
+	@Override
+	public int nextOccupied(int from, int to) {
+		to = Math.min(to, length);
+		for(int i = Math.max(from, 0); i < to; i++){
+			if(occupied(i)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * indexes of all occupied slots.
+	 * O(n) where n is the length.
+	 * @return the indexes in ascending order
+	 */
+	@Override
+	public int[] occupied() {
+		int[] out = new int[count];
+		int c = 0;
+		for(int i = 0; i < length && c < count; i++){
+			if(occupied(i)){
+				out[c++] = i;
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * O(1).
+	 * @return the node count of each level, as last saved with setLevelCounts
+	 */
+	public int[] levelCounts() {
+		int[] counts = new int[index.getInt(H_LEVELS)];
+		for(int i = 0; i < counts.length; i++){
+			counts[i] = index.getInt(H_LEVEL_COUNTS + 4L * i);
+		}
+		return counts;
+	}
+
+	/**
+	 * save the node count of each level in the header.
+	 * O(h) where h is the number of levels.
+	 * @param counts counts by level, at most 64 levels
+	 */
+	public void setLevelCounts(int[] counts) {
+		int levels = Math.min(counts.length, MAX_LEVELS);
+		index.putInt(H_LEVELS, levels);
+		for(int i = 0; i < levels; i++){
+			index.putInt(H_LEVEL_COUNTS + 4L * i, counts[i]);
+		}
+	}
+
+	/**
+	 * write every change to disk; after it returns the files hold the current store.
+	 * O(m) where m is the number of dirty pages.
+	 */
+	public void force() {
+		slots.force();
+		index.force();
+	}
+
+	/**
+	 * not supported, a snapshot would have to copy the files.
+	 * @return never returns
+	 */
+	@Override
+	public ThreeTenSlotStore<E> snapshot() {
+		throw new UnsupportedOperationException("mapped stores have no snapshots");
+	}
+
+	/**
+	 * force() and close the files. The store must not be used afterwards.
+	 */
+	@Override
+	public void close() {
+		force();
+		slots.close();
+		index.close();
+	}
+
+	//-------------------------------------------------------------
+	// TESTING CODE
+	//-------------------------------------------------------------
+
+	/**
+	 * for testing purposes.
+	 * @param args command line argument
+	 * @throws IOException if the temporary files cannot be used
+	 */
+	public static void main(String[] args) throws IOException {
+		Path dir = java.nio.file.Files.createTempDirectory("mapped");
+		Path file = dir.resolve("tree");
+
+		//set, get, replace, clear; the index follows every change
+		ThreeTenMappedSlotStore<String> s = ThreeTenMappedSlotStore.open(file, ThreeTenValueCodec.strings(12), 3);
+		s.grow(40);
+		for(int i = 0; i < 40; i++){
+			s.set(i, "v" + i);
+		}
+		s.set(7, "seven");
+		s.set(8, null);
+		if(s.length() == 40 && s.count() == 39 && s.get(7).equals("seven") && s.get(8) == null
+			&& s.indexOf("v7") == -1 && s.indexOf("seven") == 7 && s.indexOf("v39") == 39 && s.indexOf("v8") == -1
+			&& s.nextOccupied(8, 40) == 9 && s.occupied().length == 39) {
+			System.out.println("Yay 1");
+		}
+		//a value the codec refuses changes nothing
+		boolean threw = false;
+		try{
+			s.set(7, "far too long for twelve bytes");
+		}
+		catch(IllegalArgumentException e){
+			threw = true;
+		}
+		if(threw && s.count() == 39 && s.get(7).equals("seven") && s.indexOf("seven") == 7) {
+			System.out.println("Yay 2");
+		}
+		s.setLevelCounts(new int[] {1, 3, 9, 26});
+		s.close();
+
+		//reopened from disk
+		ThreeTenMappedSlotStore<String> r = ThreeTenMappedSlotStore.open(file, ThreeTenValueCodec.strings(12), 3);
+		boolean all = r.length() == 40 && r.count() == 39 && r.branch() == 3
+			&& java.util.Arrays.equals(r.levelCounts(), new int[] {1, 3, 9, 26});
+		for(int i = 0; i < 40 && all; i++){
+			String v = (i == 7) ? "seven" : (i == 8) ? null : "v" + i;
+			all = java.util.Objects.equals(r.get(i), v) && (v == null || r.indexOf(v) == i);
+		}
+		if(all) {
+			System.out.println("Yay 3");
+		}
+		r.close();
+
+		//a different k or codec is refused
+		boolean refused = false;
+		try{
+			ThreeTenMappedSlotStore.open(file, ThreeTenValueCodec.ints(), 3);
+		}
+		catch(IOException e){
+			refused = true;
+		}
+		if(refused) {
+			System.out.println("Yay 4");
+		}
+		java.nio.file.Files.delete(file);
+		java.nio.file.Files.delete(Paths.get(file + ".idx"));
+		java.nio.file.Files.delete(dir);
+	}
+}
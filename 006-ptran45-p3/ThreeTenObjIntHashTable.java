@@ -0,0 +1,577 @@
+/**
+ * creating a Hash Map from objects to primitive ints.
+ * Keys, values and cached hash codes live in parallel arrays, so no TableEntry
+ * and no boxed Integer is allocated per mapping.
+ * Removal shifts the rest of the probe chain back, so no tombstones are left.
+ * The arrays are split into pages like ThreeTenSegmentedArray chunks: snapshot() is O(1),
+ * and the live table copies a page only on its first write while an open snapshot shares it.
+ * @param <K> takes any types
+ * @author Phat Tran
+ */
+
+public class ThreeTenObjIntHashTable<K> {
+
+	/**
+	 * log2 of the page size.
+	 */
+	private static final int PAGE_SHIFT = ThreeTenSegmentedArray.CHUNK_SHIFT;
+
+	/**
+	 * mask for the position inside a page.
+	 */
+	private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+	/**
+	 * key pages, slot i lives at keys[i &gt;&gt;&gt; PAGE_SHIFT][i &amp; PAGE_MASK]; null means empty slot.
+	 * The last page may be shorter.
+	 */
+	private Object[][] keys;
+
+	/**
+	 * value pages, the value of slot i is at the same position as its key.
+	 */
+	private int[][] values;
+
+	/**
+	 * pages of the cached hashCode() of each key, compared before calling equals().
+	 */
+	private int[][] hashes;
+
+	/**
+	 * number of slots.
+	 */
+	private int cap;
+
+	/**
+	 * keep track of size (number of elements in the array).
+	 */
+	private int size;
+
+	/**
+	 * current version of the live table, every snapshot() starts a new one.
+	 */
+	private long version;
+
+	/**
+	 * pageVersion[p] is the version in which page p was allocated or last copied.
+	 */
+	private long[] pageVersion;
+
+	/**
+	 * version in which the page directories were last copied.
+	 */
+	private long dirVersion;
+
+	/**
+	 * versions of the open snapshots and how many are open of each, shared by a live table
+	 * and its snapshots. A page is shared iff some open snapshot is not older than it.
+	 */
+	private final java.util.TreeMap<Long, Integer> openSnapshots;
+
+	/**
+	 * version this snapshot was taken at, -1 for the live table.
+	 */
+	private final long snapshotVersion;
+
+	/**
+	 * whether this snapshot has been closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Constructor.
+	 * Create a hash table where the initial storage.
+	 * has a capacity of initCapacity.
+	 * You may assume initCapacity is >= 2.
+	 * @param initCapacity user's capacity
+	 */
+	public ThreeTenObjIntHashTable(int initCapacity) {
+		openSnapshots = new java.util.TreeMap<>();
+		snapshotVersion = -1;
+		allocate(initCapacity);
+		size = 0;
+	}
+
+	/**
+	 * Constructor of a read-only snapshot.
+	 * @param live table the snapshot is taken of
+	 * @param version version the snapshot is taken at
+	 */
+	private ThreeTenObjIntHashTable(ThreeTenObjIntHashTable<K> live, long version) {
+		keys = live.keys;
+		values = live.values;
+		hashes = live.hashes;
+		cap = live.cap;
+		size = live.size;
+		openSnapshots = live.openSnapshots;
+		snapshotVersion = version;
+	}
+
+	/**
+	 * Constructor.
+	 * Create a hash table where the initial storage.
+	 * has a capacity of ThreeTenHashTable.defaultTableLength.
+	 */
+	public ThreeTenObjIntHashTable() {
+		this(ThreeTenHashTable.defaultTableLength);
+	}
+
+	/**
+	 * O(1).
+	 * keep tracks the capacity of array.
+	 * @return the how big the storage is
+	 */
+	public int capacity() {
+		return cap;
+	}
+
+	/**
+	 * O(1).
+	 * keeps track numbers of elements in the table.
+	 * @return the number of elements in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * compute the slot where probing for a key starts.
+	 * O(1).
+	 * @param h hash code of the key
+	 * @param cap length of the table being probed
+	 * @return home slot of the key
+	 */
+	private int homeSlot(int h, int cap) {
+		return Math.abs(h % cap);//safe for Integer.MIN_VALUE
+	}
+
+	/**
+	 * replace the pages with new, empty ones owned by the live table.
+	 * O(n) where n is the new capacity.
+	 * @param newCap number of slots
+	 */
+	private void allocate(int newCap) {
+		int pages = (int)(((long)newCap + PAGE_MASK) >>> PAGE_SHIFT);
+		keys = new Object[pages][];
+		values = new int[pages][];
+		hashes = new int[pages][];
+		pageVersion = new long[pages];
+		for(int p = 0; p < pages; p++){
+			int len = (int)Math.min(PAGE_MASK + 1, (long)newCap - ((long)p << PAGE_SHIFT));
+			keys[p] = new Object[len];
+			values[p] = new int[len];
+			hashes[p] = new int[len];
+			pageVersion[p] = version;
+		}
+		dirVersion = version;
+		cap = newCap;
+	}
+
+	/**
+	 * O(1).
+	 * @param i slot
+	 * @return key in slot i, null if empty
+	 */
+	@SuppressWarnings("unchecked")
+	private K key(int i) {
+		return (K) keys[i >>> PAGE_SHIFT][i & PAGE_MASK];
+	}
+
+	/**
+	 * O(1).
+	 * @param i slot
+	 * @return value in slot i
+	 */
+	private int value(int i) {
+		return values[i >>> PAGE_SHIFT][i & PAGE_MASK];
+	}
+
+	/**
+	 * O(1).
+	 * @param i slot
+	 * @return cached hash code of the key in slot i
+	 */
+	private int hash(int i) {
+		return hashes[i >>> PAGE_SHIFT][i & PAGE_MASK];
+	}
+
+	/**
+	 * get the page of slot i ready for writing, copying it first if an open snapshot shares it.
+	 * O(1), O(PAGE_SIZE) when the page is copied.
+	 * @param i slot
+	 * @return page number of slot i
+	 */
+	private int own(int i) {
+		if(snapshotVersion != -1){
+			throw new UnsupportedOperationException("snapshots are read-only");
+		}
+		int p = i >>> PAGE_SHIFT;
+		if(pageVersion[p] != version){//may be shared with a snapshot
+			ownDirectory();
+			if(isShared(pageVersion[p])){
+				keys[p] = keys[p].clone();
+				values[p] = values[p].clone();
+				hashes[p] = hashes[p].clone();
+			}
+			pageVersion[p] = version;
+		}
+		return p;
+	}
+
+	/**
+	 * write one slot.
+	 * O(1), O(PAGE_SIZE) when the page is copied.
+	 * @param i slot
+	 * @param key new key, null to empty the slot
+	 * @param val new value
+	 * @param h hash code of key
+	 */
+	private void write(int i, K key, int val, int h) {
+		int p = own(i);
+		keys[p][i & PAGE_MASK] = key;
+		values[p][i & PAGE_MASK] = val;
+		hashes[p][i & PAGE_MASK] = h;
+	}
+
+	/**
+	 * check whether an open snapshot may still use a page.
+	 * O(log s) where s is the number of open snapshot versions.
+	 * @param pageVersion version in which the page was allocated or copied
+	 * @return true if some open snapshot was taken at or after pageVersion
+	 */
+	private boolean isShared(long pageVersion) {
+		synchronized(openSnapshots){
+			return !openSnapshots.isEmpty() && openSnapshots.lastKey() >= pageVersion;
+		}
+	}
+
+	/**
+	 * copy the page directories before the first change since the last snapshot, if still shared.
+	 * O(n / PAGE_SIZE) when copying, O(1) otherwise.
+	 */
+	private void ownDirectory() {
+		if(dirVersion == version){
+			return;
+		}
+		if(isShared(dirVersion)){
+			keys = keys.clone();
+			values = values.clone();
+			hashes = hashes.clone();
+		}
+		dirVersion = version;
+	}
+
+	/**
+	 * read-only view of the current mappings.
+	 * O(1); the live table copies pages lazily on later writes.
+	 * @return the snapshot, close() it when done
+	 */
+	public ThreeTenObjIntHashTable<K> snapshot() {
+		if(snapshotVersion != -1){
+			throw new UnsupportedOperationException("snapshots are read-only");
+		}
+		long taken = version;
+		version++;
+		synchronized(openSnapshots){
+			openSnapshots.merge(taken, 1, Integer::sum);
+		}
+		return new ThreeTenObjIntHashTable<K>(this, taken);
+	}
+
+	/**
+	 * release this snapshot; pages only it held are written in place again.
+	 * Does nothing on the live table.
+	 * O(log s) where s is the number of open snapshot versions.
+	 */
+	public void close() {
+		if(snapshotVersion == -1 || closed){
+			return;
+		}
+		closed = true;
+		synchronized(openSnapshots){
+			int left = openSnapshots.get(snapshotVersion) - 1;
+			if(left == 0){
+				openSnapshots.remove(snapshotVersion);
+			}
+			else{
+				openSnapshots.put(snapshotVersion, left);
+			}
+		}
+	}
+
+	/**
+	 * find the slot that holds the given key.
+	 * Probing starts at the home slot, wraps around and stops at the first empty slot.
+	 * Worst case: O(n) where n is the number of items in table, Average case: O(1).
+	 * @param key takes key
+	 * @return index of the key, -1 if the key is not in the table
+	 */
+	private int findSlot(Object key) {
+		int h = key.hashCode();
+		int index = homeSlot(h, cap);
+		for(K k = key(index); k != null; k = key(index)){//load < 0.8 so there is always an empty slot
+			if(hash(index) == h && k.equals(key)){
+				return index;
+			}
+			index++;
+			if(index == cap){//wrap around
+				index = 0;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Given a key, return the int it maps to from the table.
+	 * Worst case: O(n) where n is the number of items in table, Average case: O(1).
+	 * @param key takes key
+	 * @param absent value returned when the key is not in the table
+	 * @return value that maps the key, if key does not exist, return absent
+	 */
+	public int getInt(K key, int absent) {
+		if(key == null){
+			return absent;
+		}
+		int index = findSlot(key);
+		if(index == -1){
+			return absent;
+		}
+		return value(index);
+	}
+
+	/**
+	 * Determine if key is in the table or not.
+	 * Average case: O(1).
+	 * @param key takes key
+	 * @return true if key has a mapping, false otherwise
+	 */
+	public boolean containsKey(K key) {
+		if(key == null){
+			return false;
+		}
+		return findSlot(key) != -1;
+	}
+
+	/**
+	 * Place value val at the location determined by key.
+	 * If the key already exists in the table, replace the mapping to be val.
+	 * If after the addition, load of table >= 0.8, rehash to twice the current capacity.
+	 * Worst case: O(n) where n is the number of items in table, Average case: O(1).
+	 * @param key takes key, null keys are ignored
+	 * @param val takes value
+	 * @param absent value returned when the key had no previous mapping
+	 * @return the previous value of key, or absent if there was none
+	 */
+	public int putInt(K key, int val, int absent) {
+		if(key == null){
+			return absent;
+		}
+		int h = key.hashCode();
+		int index = homeSlot(h, cap);
+		for(K k = key(index); k != null; k = key(index)){
+			if(hash(index) == h && k.equals(key)){//replace the mapping
+				int old = value(index);
+				write(index, k, val, h);
+				return old;
+			}
+			index++;
+			if(index == cap){//wrap around
+				index = 0;
+			}
+		}
+		write(index, key, val, h);
+		size++;
+		if((double)size / cap >= 0.8){//rehash the table
+			rehash(cap * 2);
+		}
+		return absent;
+	}
+
+	/**
+	 * grow the table once so that expected more keys fit without another rehash.
+	 * Does nothing if the table is big enough already.
+	 * O(n) where n is the capacity of the table if it grows, O(1) otherwise.
+	 * @param expected number of keys about to be added
+	 */
+	public void ensureCapacity(int expected) {
+		long needed = (long)((size + (long)Math.max(expected, 0)) / 0.8) + 1;//keeps load below 0.8
+		needed = Math.min(needed, Integer.MAX_VALUE - 8);
+		if(needed > cap){
+			rehash((int)needed);
+		}
+	}
+
+	/**
+	 * Remove the given key (and associated value) from the table.
+	 * The entries after the removed one are shifted back to close the gap,
+	 * so the table never holds tombstones.
+	 * Worst case: O(n) where n is the number of items in table, Average case: O(1).
+	 * @param key takes key
+	 * @param absent value returned when the key is not in the table
+	 * @return value removed, or absent
+	 */
+	public int removeInt(K key, int absent) {
+		if(key == null){
+			return absent;
+		}
+		int index = findSlot(key);
+		if(index == -1){
+			return absent;
+		}
+		int removal = value(index);
+		int hole = index;
+		int next = index;
+		while(true){//backward shift deletion
+			next++;
+			if(next == cap){
+				next = 0;
+			}
+			K k = key(next);
+			if(k == null){
+				break;
+			}
+			int home = homeSlot(hash(next), cap);
+			//the entry at next can move into the hole only if its home
+			//is not cyclically inside (hole, next]
+			boolean inRange = (hole <= next) ? (hole < home && home <= next) : (hole < home || home <= next);
+			if(!inRange){
+				write(hole, k, value(next), hash(next));
+				hole = next;
+			}
+		}
+		write(hole, null, 0, 0);
+		size--;
+		return removal;
+	}
+
+	/**
+	 * Increase or decrease the capacity of the storage to be newCap.
+	 * If the new capacity will make the load to be at or above 0.8, do not rehash and return false.
+	 * The new pages are never shared, open snapshots keep the old ones.
+	 * @param newCap new capacity of the storage array
+	 * @return true if rehash successfully, otherwise, false
+	 */
+	public boolean rehash(int newCap) {
+		if(snapshotVersion != -1){
+			throw new UnsupportedOperationException("snapshots are read-only");
+		}
+		if(newCap <= 0 || (double)size / newCap >= 0.8){
+			return false;
+		}
+		Object[][] oldKeys = keys;
+		int[][] oldValues = values;
+		int[][] oldHashes = hashes;
+		allocate(newCap);
+		for(int p = 0; p < oldKeys.length; p++){
+			for(int j = 0; j < oldKeys[p].length; j++){
+				@SuppressWarnings("unchecked")
+				K k = (K) oldKeys[p][j];
+				if(k == null){
+					continue;
+				}
+				int index = homeSlot(oldHashes[p][j], newCap);
+				while(key(index) != null){
+					index++;
+					if(index == newCap){
+						index = 0;
+					}
+				}
+				write(index, k, oldValues[p][j], oldHashes[p][j]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * toString().
+	 * for testing purposes.
+	 * @return String contains elements in storage array
+	 */
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		for(int i = 0; i < cap; i++) {
+			if(key(i) != null) {
+				s.append(key(i) + ":" + value(i) + "\n");
+			}
+		}
+		return s.toString().trim();
+	}
+
+	//-------------------------------------------------------------
+	// TESTING CODE
+	//-------------------------------------------------------------
+
+	/**
+	 * for testing purposes.
+	 * @param args command line argument
+	 */
+	public static void main(String[] args) {
+		ThreeTenObjIntHashTable<Integer> ht1 = new ThreeTenObjIntHashTable<>(5);
+
+		//init, put, get
+		if(ht1.capacity() == 5 && ht1.size() == 0 && ht1.putInt(1, 10, -1) == -1
+			&& ht1.putInt(2, 20, -1) == -1 && ht1.size() == 2 && ht1.getInt(1, -1) == 10
+			&& ht1.getInt(3, -1) == -1 && ht1.putInt(1, 11, -1) == 10 && ht1.getInt(1, -1) == 11) {
+			System.out.println("Yay 1");
+		}
+
+		//collision, wrap-around and rehash
+		if(ht1.putInt(4, 40, -1) == -1 && ht1.putInt(9, 90, -1) == -1 && ht1.capacity() == 10
+			&& ht1.getInt(9, -1) == 90 && ht1.getInt(4, -1) == 40 && ht1.size() == 4) {
+			System.out.println("Yay 2");
+		}
+
+		//remove shifts the chain back instead of leaving a tombstone
+		ThreeTenObjIntHashTable<Integer> ht2 = new ThreeTenObjIntHashTable<>(10);
+		ht2.putInt(8, 8, -1);
+		ht2.putInt(18, 18, -1);
+		ht2.putInt(28, 28, -1);
+		ht2.putInt(9, 9, -1);
+		if(ht2.removeInt(8, -1) == 8 && ht2.getInt(18, -1) == 18 && ht2.getInt(28, -1) == 28
+			&& ht2.getInt(9, -1) == 9 && ht2.removeInt(8, -1) == -1 && ht2.size() == 3
+			&& ht2.toString().equals("9:9\n18:18\n28:28")) {
+			System.out.println("Yay 3");
+		}
+
+		//pre-sizing: no growth while adding the expected keys
+		ThreeTenObjIntHashTable<Integer> ht3 = new ThreeTenObjIntHashTable<>();
+		ht3.ensureCapacity(100);
+		int cap = ht3.capacity();
+		for(int i = 0; i < 100; i++){
+			ht3.putInt(i, i, -1);
+		}
+		if(cap == 126 && ht3.capacity() == cap && ht3.getInt(99, -1) == 99) {
+			System.out.println("Yay 4");
+		}
+
+		//copy-on-write: the snapshot keeps its mappings, the live table copies only the written page
+		ThreeTenObjIntHashTable<Integer> live = new ThreeTenObjIntHashTable<>(4 * (PAGE_MASK + 1));
+		for(int i = 0; i < 10000; i++){
+			live.putInt(i, i, -1);
+		}
+		ThreeTenObjIntHashTable<Integer> snap = live.snapshot();
+		int page = live.findSlot(5) >>> PAGE_SHIFT;
+		Object[] before = live.keys[page];
+		live.putInt(5, 50, -1);
+		int copied = 0;
+		for(int p = 0; p < live.keys.length; p++){
+			copied += (live.keys[p] != snap.keys[p]) ? 1 : 0;
+		}
+		boolean kept = copied == 1 && snap.keys[page] == before && snap.getInt(5, -1) == 5
+			&& live.getInt(5, -1) == 50 && snap.size() == 10000;
+		snap.close();
+		Object[] own = live.keys[page];
+		live.snapshot().close();
+		live.putInt(5, 51, -1);//no open snapshot: written in place
+		boolean readOnly = false;
+		try{
+			snap.putInt(1, 1, -1);
+		}
+		catch(UnsupportedOperationException e){
+			readOnly = true;
+		}
+		if(kept && readOnly && live.keys[page] == own && live.getInt(5, -1) == 51) {
+			System.out.println("Yay 5");
+		}
+	}
+}
@@ -0,0 +1,497 @@
+/**
+ * shared part of the k-ary trees that keep primitive values (ThreeTenIntKTree, ThreeTenLongKTree).
+ * Same implicit layout and set/remove rules as ThreeTenKTree, but nothing is boxed:
+ * - the values live in a primitive array kept by the subclass, and an occupancy bitmap
+ *   marks which slots hold a node (a primitive has no null);
+ * - the value to slot index is an open-addressing table of slot numbers only. The key of
+ *   an entry is read from the value array, so the index costs 4 bytes per entry.
+ *   It runs at a load of up to 0.8 and grows by half, since its length need not be a
+ *   power of two: the home entry is picked by multiply-shift of the spread hash.
+ * About 4 + 6 bytes per node for int values, 8 + 6 for long values.
+ * @author Phat Tran
+ */
+public abstract class ThreeTenPrimitiveKTree {
+
+	/**
+	 * bit i is set when slot i holds a node.
+	 */
+	private long[] bits;
+
+	/**
+	 * entries of the value index: slot number + 1, 0 for an empty entry.
+	 */
+	private int[] index;
+
+	/**
+	 * number of used entries in index.
+	 */
+	private int indexCount;
+
+	/**
+	 * the index grows once it is fuller than this.
+	 */
+	private static final double MAX_LOAD = 0.8;
+
+	/**
+	 * number of K (children that 1 node can have the most).
+	 */
+	private final int branchK;
+
+	/**
+	 * length of storage.
+	 */
+	private int capacity;
+
+	/**
+	 * size, numbers of node in the tree.
+	 */
+	private int size;
+
+	/**
+	 * height of the tree.
+	 */
+	private int treeHeight;
+
+	/**
+	 * levelStart[L] is the storage index of the leftmost node on level L.
+	 * the last entry is the first index beyond the int range.
+	 */
+	private final long[] levelStart;
+
+	/**
+	 * levelCount[L] is the number of nodes on level L.
+	 */
+	private final int[] levelCount;
+
+	/**
+	 * Constructor.
+	 * @param length length of the storage array
+	 * @param k numbers of children a node can have the most
+	 */
+	protected ThreeTenPrimitiveKTree(int length, int k) {
+		branchK = k;
+		capacity = Math.max(length, 1);
+		bits = new long[((capacity - 1) >>> 6) + 1];
+		index = new int[8];
+		int levels = 1;
+		for(long start = 0; start <= Integer.MAX_VALUE; start = start * k + 1){
+			levels++;
+		}
+		levelStart = new long[levels];
+		for(int i = 1; i < levels; i++){
+			levelStart[i] = levelStart[i - 1] * k + 1;
+		}
+		levelCount = new int[levels];
+	}
+
+	/**
+	 * spread hash of the value stored at a slot.
+	 * @param slot an occupied slot
+	 * @return the same hash the subclass probes with for that value
+	 */
+	protected abstract int hashAt(int slot);
+
+	/**
+	 * make the value array the given length, keeping its contents.
+	 * @param length new length of storage
+	 */
+	protected abstract void resizeValues(int length);
+
+	/**
+	 * append the value of a slot.
+	 * @param string where to append
+	 * @param slot an occupied slot
+	 */
+	protected abstract void appendValue(StringBuilder string, int slot);
+
+	/**
+	 * index entry holding the value of a slot.
+	 * @param slot an occupied slot
+	 * @return its entry in the index
+	 */
+	protected abstract int entryOf(int slot);
+
+	/**
+	 * getter for branchK, which is number of children a node can have the most.
+	 * O(1).
+	 * @return branchK
+	 */
+	public int getBranch() {
+		return branchK;
+	}
+
+	/**
+	 * report number of nodes in tree.
+	 * O(1).
+	 * @return size - number of nodes in tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * report the length of storage.
+	 * O(1).
+	 * @return numbers of nodes of a perfect tree of the current height.
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * report the tree height.
+	 * O(1).
+	 * @return the treeHeight
+	 */
+	public int height() {
+		return treeHeight;
+	}
+
+	/**
+	 * memory held by storage, the bitmap and the index.
+	 * O(1).
+	 * @param valueBytes size of one stored value
+	 * @return bytes used by the arrays, not counting object headers
+	 */
+	protected long footprint(int valueBytes) {
+		return (long)capacity * valueBytes + (long)bits.length * 8 + (long)index.length * 4;
+	}
+
+	/**
+	 * O(1).
+	 * @param slot storage index
+	 * @return true if slot holds a node
+	 */
+	public boolean isOccupied(int slot) {
+		return (slot >= 0) && (slot < capacity) && ((bits[slot >>> 6] & (1L << slot)) != 0);
+	}
+
+	/**
+	 * find the level of a storage index from the closed-form level offsets.
+	 * O(log h) where h is the number of levels.
+	 * @param slot index in storage
+	 * @return level of the index, 0 for the root
+	 */
+	private int levelOf(int slot) {
+		int pos = java.util.Arrays.binarySearch(levelStart, slot);
+		return (pos >= 0) ? pos : -pos - 2;
+	}
+
+	/**
+	 * find the first occupied slot in a range, a word of the bitmap at a time.
+	 * O(r / 64) where r is the length of the range.
+	 * @param from first slot of the range
+	 * @param to end of the range, exclusive
+	 * @return the first occupied slot in [from, to), -1 if there is none
+	 */
+	private int nextOccupied(long from, long to) {
+		long end = Math.min(to, capacity);
+		if(from >= end){
+			return -1;
+		}
+		int w = (int)(from >>> 6);
+		long word = bits[w] & (-1L << from);//drop the bits before from
+		while(true){
+			if(word != 0){
+				long found = ((long)w << 6) + Long.numberOfTrailingZeros(word);
+				return (found < end) ? (int)found : -1;
+			}
+			w++;
+			if(((long)w << 6) >= end){
+				return -1;
+			}
+			word = bits[w];
+		}
+	}
+
+	/**
+	 * O(K / 64) where K is the branching factor.
+	 * @param slot storage index of the node
+	 * @return true if the node has at least one child
+	 */
+	private boolean hasChild(int slot) {
+		long first = (long)branchK * slot + 1;
+		return nextOccupied(first, first + branchK) != -1;
+	}
+
+	/**
+	 * home entry of a spread hash, by multiply-shift so any table length works.
+	 * subclasses probe from here for a value, comparing the value at each entry's slot.
+	 * O(1).
+	 * @param hash spread hash
+	 * @return entry where probing starts
+	 */
+	protected int home(int hash) {
+		return (int)(((hash & 0xffffffffL) * index.length) >>> 32);
+	}
+
+	/**
+	 * O(1).
+	 * @param entry an entry of the index
+	 * @return the next entry to probe
+	 */
+	protected int nextEntry(int entry) {
+		return (entry + 1 == index.length) ? 0 : entry + 1;
+	}
+
+	/**
+	 * O(1).
+	 * @param entry an entry of the index
+	 * @return the slot it points to, -1 for an empty entry
+	 */
+	protected int slotAt(int entry) {
+		return index[entry] - 1;
+	}
+
+	/**
+	 * put a slot into the index, growing it past MAX_LOAD.
+	 * Average case: O(1).
+	 * @param entry empty entry found by probing for the slot's value
+	 * @param slot slot holding the value
+	 */
+	private void indexPut(int entry, int slot) {
+		index[entry] = slot + 1;
+		indexCount++;
+		if(indexCount > MAX_LOAD * index.length){
+			rehash((int)Math.min(((long)index.length * 3 / 2 + 7) & ~7L, Integer.MAX_VALUE - 8));
+		}
+	}
+
+	/**
+	 * empty an index entry and shift the rest of its probe chain back.
+	 * Average case: O(1).
+	 * @param hole entry to empty
+	 */
+	private void indexRemove(int hole) {
+		int next = hole;
+		while(true){//backward shift deletion
+			next = nextEntry(next);
+			if(index[next] == 0){
+				break;
+			}
+			int h = home(hashAt(index[next] - 1));
+			//the entry at next can move into the hole only if its home
+			//is not cyclically inside (hole, next]
+			boolean inRange = (hole <= next) ? (hole < h && h <= next) : (hole < h || h <= next);
+			if(!inRange){
+				index[hole] = index[next];
+				hole = next;
+			}
+		}
+		index[hole] = 0;
+		indexCount--;
+	}
+
+	/**
+	 * move every slot into an index of the given length.
+	 * O(n) where n is the new length.
+	 * @param length new number of entries
+	 */
+	private void rehash(int length) {
+		int[] old = index;
+		index = new int[length];
+		for(int e : old){
+			if(e != 0){
+				int entry = home(hashAt(e - 1));
+				while(index[entry] != 0){
+					entry = nextEntry(entry);
+				}
+				index[entry] = e;
+			}
+		}
+	}
+
+	/**
+	 * make room in the index for a known number of nodes.
+	 * O(n) where n is the new index length.
+	 * @param nodes number of nodes to make room for
+	 */
+	protected void ensureIndex(int nodes) {
+		long length = (((long)(nodes / MAX_LOAD) + 8) & ~7L);
+		if(length > index.length){
+			rehash((int)Math.min(length, Integer.MAX_VALUE - 8));
+		}
+	}
+
+	/**
+	 * check whether a new node may go into an empty slot, growing storage by a level if needed.
+	 * O(1), O(n) when a level is added where n is the new capacity.
+	 * @param slot empty storage index
+	 * @return false if the slot has no parent or its level would not fit in an array
+	 */
+	protected boolean canAdd(int slot) {
+		if(slot < 0 || (slot != 0 && !isOccupied((slot - 1)/branchK))){/*no parent so cannot add child*/
+			return false;
+		}
+		if(slot >= capacity){/*adding new level for the tree*/
+			long length = levelStart[levelOf(slot) + 1];
+			if(length > Integer.MAX_VALUE - 8){//larger than any array
+				return false;
+			}
+			capacity = (int)length;
+			bits = java.util.Arrays.copyOf(bits, ((capacity - 1) >>> 6) + 1);
+			resizeValues(capacity);
+		}
+		return true;
+	}
+
+	/**
+	 * record a new node whose value was just written. Call after canAdd(slot).
+	 * Average case: O(1).
+	 * @param slot storage index of the node
+	 * @param entry empty index entry found by probing for its value
+	 */
+	protected void added(int slot, int entry) {
+		bits[slot >>> 6] |= 1L << slot;
+		indexPut(entry, slot);
+		size++;
+		int level = levelOf(slot);
+		levelCount[level]++;
+		if(level > treeHeight){
+			treeHeight = level;
+		}
+	}
+
+	/**
+	 * drop the index entry of an occupied slot before its value is replaced.
+	 * Average case: O(1).
+	 * @param slot storage index of the node
+	 */
+	protected void replacing(int slot) {
+		indexRemove(entryOf(slot));
+	}
+
+	/**
+	 * index the new value of a replaced node.
+	 * Average case: O(1).
+	 * @param slot storage index of the node
+	 * @param entry empty index entry found by probing for its new value
+	 */
+	protected void replaced(int slot, int entry) {
+		indexPut(entry, slot);
+	}
+
+	/**
+	 * Remove the node at a slot if it is a leaf.
+	 * Average case: O(K / 64) where K is the branching factor.
+	 * @param slot storage index
+	 * @return true if a leaf was removed, otherwise false
+	 */
+	public boolean clear(int slot) {
+		if(!isOccupied(slot) || hasChild(slot)){
+			return false;
+		}
+		indexRemove(entryOf(slot));
+		bits[slot >>> 6] &= ~(1L << slot);
+		size--;
+		//the height drops when the node was the last one on the deepest level
+		levelCount[levelOf(slot)]--;
+		while((treeHeight > 0) && (levelCount[treeHeight] == 0)){
+			treeHeight--;
+		}
+		return true;
+	}
+
+	/**
+	 * O(K / 64) where K is the branching factor.
+	 * @param slot storage index, -1 for a missing value
+	 * @return true if slot holds a leaf node
+	 */
+	protected boolean isLeafSlot(int slot) {
+		return isOccupied(slot) && !hasChild(slot);
+	}
+
+	/**
+	 * children of a node, from left to right, separated by a single space.
+	 * O(K / 64 + c) where K is the branching factor and c the number of children.
+	 * @param slot storage index, -1 for a missing value
+	 * @return the children, empty for a leaf, null if slot is -1
+	 */
+	protected String childrenOf(int slot) {
+		if(slot == -1){
+			return null;
+		}
+		StringBuilder string = new StringBuilder();
+		long first = (long)branchK * slot + 1;
+		long end = first + branchK;
+		for(int child = nextOccupied(first, end); child != -1; child = nextOccupied(child + 1L, end)){
+			if(string.length() > 0){
+				string.append(" ");
+			}
+			appendValue(string, child);
+		}
+		return string.toString();
+	}
+
+	/**
+	 * values on the path from the root down to a node, separated by "-->".
+	 * O(height).
+	 * @param slot storage index, -1 for a missing value
+	 * @return the path, null if slot is -1
+	 */
+	protected String ancestorsOf(int slot) {
+		if(slot == -1){
+			return null;
+		}
+		int[] path = new int[levelOf(slot) + 1];
+		for(int i = path.length - 1; i >= 0; i--){//walk up to the root
+			path[i] = slot;
+			slot = (slot - 1)/branchK;
+		}
+		StringBuilder string = new StringBuilder();
+		for(int i = 0; i < path.length; i++){
+			if(i > 0){
+				string.append("-->");
+			}
+			appendValue(string, path[i]);
+		}
+		return string.toString();
+	}
+
+	/**
+	 * all nodes in level order, separated by a single space.
+	 * O(c / 64 + n) where c is the capacity and n the size.
+	 * @return a string contains node in level order
+	 */
+	public String toStringLevelOrder() {
+		StringBuilder string = new StringBuilder();
+		for(int i = nextOccupied(0, capacity); i != -1; i = nextOccupied(i + 1L, capacity)){
+			if(string.length() > 0){
+				string.append(" ");
+			}
+			appendValue(string, i);
+		}
+		return string.toString();
+	}
+
+	/**
+	 * all slots by level, one line per level, "null" for an empty slot.
+	 * O(c) where c is the capacity.
+	 * @return string contains all nodes, including null, of the tree
+	 */
+	@Override
+	public String toString() {
+		if(!isOccupied(0)){
+			return "";
+		}
+		StringBuilder string = new StringBuilder();
+		for(int level = 0; levelStart[level] < capacity; level++){
+			if(level > 0){
+				string.append("\n");
+			}
+			long end = Math.min(levelStart[level + 1], capacity);
+			for(long i = levelStart[level]; i < end; i++){
+				if(i > levelStart[level]){
+					string.append(" ");
+				}
+				if(isOccupied((int)i)){
+					appendValue(string, (int)i);
+				}
+				else{
+					string.append("null");
+				}
+			}
+		}
+		return string.toString();
+	}
+}
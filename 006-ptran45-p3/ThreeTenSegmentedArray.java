@@ -0,0 +1,413 @@
+/**
+ * array of references split into fixed-size chunks.
+ * Growing only adds chunks (and copies the small chunk directory),
+ * existing chunks are never copied, so growth needs no second full-size array.
+ * Chunks are allocated on the first non-null write; an unallocated chunk reads as all null.
+ * Index i lives at chunks[i >>> CHUNK_SHIFT][i &amp; CHUNK_MASK].
+ * Every chunk has an occupancy bitmap, so empty runs are skipped a 64-slot word at a time.
+ * snapshot() is O(1): the view keeps the current directory, and the live array copies the
+ * directory and each chunk again only on its first write while an open snapshot shares it.
+ * @param <E> takes any data types
+ * @author Phat Tran
+ */
+public class ThreeTenSegmentedArray<E> implements ThreeTenSlotStore<E> {
+
+	/**
+	 * log2 of the chunk size.
+	 */
+	public static final int CHUNK_SHIFT = 12;
+
+	/**
+	 * number of slots in a full chunk.
+	 */
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+	/**
+	 * mask for the position inside a chunk.
+	 */
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * chunk directory, null entries are chunks not allocated yet.
+	 * The last chunk may be shorter than CHUNK_SIZE.
+	 */
+	private Object[][] chunks;
+
+	/**
+	 * occupancy bitmaps, bit i of bits[c] is set when slot i of chunks[c] is non-null.
+	 */
+	private long[][] bits;
+
+	/**
+	 * number of longs in the bitmap of a chunk.
+	 */
+	private static final int CHUNK_WORDS = CHUNK_SIZE / 64;
+
+	/**
+	 * current version of the live array, every snapshot() starts a new one.
+	 */
+	private long version;
+
+	/**
+	 * chunkVersion[c] is the version in which chunks[c] was allocated or last copied.
+	 */
+	private long[] chunkVersion;
+
+	/**
+	 * version in which the directory arrays were last copied.
+	 */
+	private long dirVersion;
+
+	/**
+	 * versions of the open snapshots and how many are open of each, shared by a live array
+	 * and its snapshots. A page is shared iff some open snapshot is not older than it.
+	 */
+	private final java.util.TreeMap<Long, Integer> openSnapshots;
+
+	/**
+	 * version this snapshot was taken at, -1 for the live array.
+	 */
+	private final long snapshotVersion;
+
+	/**
+	 * whether this snapshot has been closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * number of slots.
+	 */
+	private int length;
+
+	/**
+	 * Constructor.
+	 * @param length number of slots, all null
+	 */
+	public ThreeTenSegmentedArray(int length) {
+		this.length = length;
+		chunks = new Object[chunkCount(length)][];
+		bits = new long[chunks.length][];
+		chunkVersion = new long[chunks.length];
+		openSnapshots = new java.util.TreeMap<>();
+		snapshotVersion = -1;
+	}
+
+	/**
+	 * Constructor of a read-only snapshot.
+	 * @param live array the snapshot is taken of
+	 * @param version version the snapshot is taken at
+	 */
+	private ThreeTenSegmentedArray(ThreeTenSegmentedArray<E> live, long version) {
+		length = live.length;
+		chunks = live.chunks;
+		bits = live.bits;
+		openSnapshots = live.openSnapshots;
+		snapshotVersion = version;
+	}
+
+	/**
+	 * number of chunks needed for a length.
+	 * @param len number of slots
+	 * @return number of chunks
+	 */
+	private static int chunkCount(int len) {
+		return (int)(((long)len + CHUNK_MASK) >>> CHUNK_SHIFT);
+	}
+
+	/**
+	 * O(1).
+	 * @return number of slots
+	 */
+	@Override
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * read one slot.
+	 * O(1).
+	 * @param index slot, 0 &lt;= index &lt; length()
+	 * @return value in the slot, null if empty
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		Object[] chunk = chunks[index >>> CHUNK_SHIFT];
+		if(chunk == null){
+			return null;
+		}
+		return (E) chunk[index & CHUNK_MASK];
+	}
+
+	/**
+	 * write one slot, allocating its chunk if needed.
+	 * O(1), O(CHUNK_SIZE) when a chunk is allocated.
+	 * @param index slot, 0 &lt;= index &lt; length()
+	 * @param value new value, may be null
+	 */
+	@Override
+	public void set(int index, E value) {
+		checkWritable();
+		int c = index >>> CHUNK_SHIFT;
+		Object[] chunk = chunks[c];
+		if(chunk == null){
+			if(value == null){//nothing to clear
+				return;
+			}
+			ownDirectory();
+			chunk = new Object[chunkLength(c)];
+			chunks[c] = chunk;
+			bits[c] = new long[CHUNK_WORDS];
+			chunkVersion[c] = version;
+		}
+		else if(chunkVersion[c] != version){//may be shared with a snapshot
+			ownDirectory();
+			if(isShared(chunkVersion[c])){
+				chunk = chunk.clone();
+				chunks[c] = chunk;
+				bits[c] = bits[c].clone();
+			}
+			chunkVersion[c] = version;
+		}
+		int i = index & CHUNK_MASK;
+		chunk[i] = value;
+		if(value == null){
+			bits[c][i >>> 6] &= ~(1L << i);
+		}
+		else{
+			bits[c][i >>> 6] |= 1L << i;
+		}
+	}
+
+	/**
+	 * length of chunk c for the current length.
+	 * @param c chunk number
+	 * @return CHUNK_SIZE, or less for the last chunk
+	 */
+	private int chunkLength(int c) {
+		return (int)Math.min(CHUNK_SIZE, (long)length - ((long)c << CHUNK_SHIFT));
+	}
+
+	/**
+	 * make the array longer, the new slots are null.
+	 * Only the chunk directory and a partial last chunk are copied.
+	 * O(n / CHUNK_SIZE + CHUNK_SIZE) where n is the new length.
+	 * @param newLength new number of slots, ignored if not larger than length()
+	 */
+	@Override
+	public void grow(int newLength) {
+		checkWritable();
+		if(newLength <= length){
+			return;
+		}
+		int last = chunkCount(length) - 1;
+		chunks = java.util.Arrays.copyOf(chunks, chunkCount(newLength));//new directory, never shared
+		bits = java.util.Arrays.copyOf(bits, chunks.length);
+		chunkVersion = java.util.Arrays.copyOf(chunkVersion, chunks.length);
+		dirVersion = version;
+		length = newLength;
+		if(last >= 0 && chunks[last] != null && chunks[last].length < chunkLength(last)){//fill up the partial chunk
+			chunks[last] = java.util.Arrays.copyOf(chunks[last], chunkLength(last));
+			bits[last] = bits[last].clone();
+			chunkVersion[last] = version;
+		}
+	}
+
+	/**
+	 * throw if this is a snapshot.
+	 */
+	private void checkWritable() {
+		if(snapshotVersion != -1){
+			throw new UnsupportedOperationException("snapshots are read-only");
+		}
+	}
+
+	/**
+	 * check whether an open snapshot may still use a page.
+	 * O(log s) where s is the number of open snapshot versions.
+	 * @param pageVersion version in which the page was allocated or copied
+	 * @return true if some open snapshot was taken at or after pageVersion
+	 */
+	private boolean isShared(long pageVersion) {
+		synchronized(openSnapshots){
+			return !openSnapshots.isEmpty() && openSnapshots.lastKey() >= pageVersion;
+		}
+	}
+
+	/**
+	 * copy the directory arrays before the first change since the last snapshot, if still shared.
+	 * O(n / CHUNK_SIZE) when copying, O(1) otherwise.
+	 */
+	private void ownDirectory() {
+		if(dirVersion == version){
+			return;
+		}
+		if(isShared(dirVersion)){
+			chunks = chunks.clone();
+			bits = bits.clone();
+		}
+		dirVersion = version;
+	}
+
+	/**
+	 * read-only view of the current contents.
+	 * O(1); the live array copies pages lazily on later writes.
+	 * @return the snapshot, close() it when done
+	 */
+	@Override
+	public ThreeTenSegmentedArray<E> snapshot() {
+		checkWritable();
+		long taken = version;
+		version++;
+		synchronized(openSnapshots){
+			openSnapshots.merge(taken, 1, Integer::sum);
+		}
+		return new ThreeTenSegmentedArray<E>(this, taken);
+	}
+
+	/**
+	 * release this snapshot; pages only it held are written in place again and can be collected.
+	 * O(log s) where s is the number of open snapshot versions.
+	 */
+	@Override
+	public void close() {
+		if(snapshotVersion == -1 || closed){
+			return;
+		}
+		closed = true;
+		synchronized(openSnapshots){
+			int left = openSnapshots.get(snapshotVersion) - 1;
+			if(left == 0){
+				openSnapshots.remove(snapshotVersion);
+			}
+			else{
+				openSnapshots.put(snapshotVersion, left);
+			}
+		}
+	}
+
+	/**
+	 * find the first non-null slot in a range with the occupancy bitmaps.
+	 * Unallocated chunks are skipped whole, empty words 64 slots at a time.
+	 * O(r / 64) where r is the length of the range.
+	 * @param from first slot of the range
+	 * @param to end of the range, exclusive
+	 * @return the first non-null slot in [from, to), -1 if there is none
+	 */
+	@Override
+	public int nextOccupied(int from, int to) {
+		long end = Math.min(to, length);
+		long i = Math.max(from, 0);
+		while(i < end){
+			int c = (int)(i >>> CHUNK_SHIFT);
+			long chunkStart = (long)c << CHUNK_SHIFT;
+			long[] b = bits[c];
+			if(b != null){
+				int w = (int)(i - chunkStart) >>> 6;
+				long word = b[w] & (-1L << i);//drop the bits before i
+				while(true){
+					if(word != 0){
+						long found = chunkStart + (w << 6) + Long.numberOfTrailingZeros(word);
+						return (found < end) ? (int)found : -1;
+					}
+					w++;
+					if(w == CHUNK_WORDS || chunkStart + (w << 6) >= end){
+						break;
+					}
+					word = b[w];
+				}
+			}
+			i = chunkStart + CHUNK_SIZE;
+		}
+		return -1;
+	}
+
+	/**
+	 * indexes of all non-null slots, using the occupancy bitmaps.
+	 * O(n / 64 + m) where m is the number of non-null slots.
+	 * @return the indexes in ascending order
+	 */
+	@Override
+	public int[] occupied() {
+		int[] out = new int[16];
+		int count = 0;
+		for(int i = nextOccupied(0, length); i != -1; i = nextOccupied(i + 1, length)){
+			if(count == out.length){
+				out = java.util.Arrays.copyOf(out, count * 2);
+			}
+			out[count++] = i;
+		}
+		return java.util.Arrays.copyOf(out, count);
+	}
+
+	/**
+	 * O(n / CHUNK_SIZE).
+	 * @return number of chunks allocated so far
+	 */
+	public int allocatedChunks() {
+		int count = 0;
+		for(Object[] chunk : chunks){
+			if(chunk != null){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	//-------------------------------------------------------------
+	// TESTING CODE
+	//-------------------------------------------------------------
+
+	/**
+	 * for testing purposes.
+	 * @param args command line argument
+	 */
+	public static void main(String[] args) {
+		ThreeTenSegmentedArray<String> a = new ThreeTenSegmentedArray<>(7);
+
+		//init, get, set within the first partial chunk
+		a.set(3, "D");
+		if(a.length() == 7 && a.get(3).equals("D") && a.get(0) == null && a.allocatedChunks() == 1) {
+			System.out.println("Yay 1");
+		}
+
+		//growth keeps old values and only allocates chunks that are written
+		a.grow(3 * CHUNK_SIZE);
+		a.set(CHUNK_SIZE - 1, "E");
+		a.set(2 * CHUNK_SIZE + 5, "F");
+		a.set(CHUNK_SIZE + 1, null);
+		if(a.length() == 3 * CHUNK_SIZE && a.get(3).equals("D") && a.get(CHUNK_SIZE - 1).equals("E")
+			&& a.get(2 * CHUNK_SIZE + 5).equals("F") && a.get(CHUNK_SIZE + 1) == null
+			&& a.allocatedChunks() == 2
+			&& java.util.Arrays.equals(a.occupied(), new int[] {3, CHUNK_SIZE - 1, 2 * CHUNK_SIZE + 5})
+			&& a.nextOccupied(4, 3 * CHUNK_SIZE) == CHUNK_SIZE - 1 && a.nextOccupied(CHUNK_SIZE, 2 * CHUNK_SIZE + 5) == -1) {
+			System.out.println("Yay 2");
+		}
+
+		//copy-on-write: the snapshot keeps its values, the live array copies only the written chunk
+		ThreeTenSegmentedArray<String> snap = a.snapshot();
+		Object[] firstChunk = a.chunks[0];
+		a.set(3, "X");
+		boolean shared = a.chunks[2] == snap.chunks[2];
+		a.set(2 * CHUNK_SIZE + 6, "G");
+		a.grow(4 * CHUNK_SIZE);
+		boolean kept = snap.get(3).equals("D") && snap.get(2 * CHUNK_SIZE + 6) == null && snap.length() == 3 * CHUNK_SIZE
+			&& a.get(3).equals("X") && a.chunks[0] != firstChunk && snap.chunks[0] == firstChunk
+			&& shared && a.chunks[2] != snap.chunks[2];
+		snap.close();
+		Object[] ownChunk = a.chunks[2];
+		ThreeTenSegmentedArray<String> closedSnap = a.snapshot();
+		closedSnap.close();
+		a.set(2 * CHUNK_SIZE + 7, "Y");//no open snapshot: written in place
+		boolean readOnly = false;
+		try{
+			snap.set(0, "Z");
+		}
+		catch(UnsupportedOperationException e){
+			readOnly = true;
+		}
+		if(kept && readOnly && a.chunks[2] == ownChunk && a.get(2 * CHUNK_SIZE + 7).equals("Y")) {
+			System.out.println("Yay 3");
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * storage of a k-ary tree in the implicit heap layout: slot i holds the node
+ * whose children are slots k*i+1 .. k*i+k, null marks an empty slot.
+ * ThreeTenSegmentedArray keeps every slot (dense),
+ * ThreeTenSparseSlotStore keeps only the occupied ones (sparse).
+ * Both support copy-on-write snapshots: snapshot() shares the current pages, and the
+ * live store copies a page before its first write while an open snapshot still uses it.
+ * @param <E> takes any data types
+ * @author Phat Tran
+ */
+public interface ThreeTenSlotStore<E> {
+
+	/**
+	 * number of addressable slots.
+	 * @return the logical length of the store
+	 */
+	int length();
+
+	/**
+	 * read one slot.
+	 * @param index slot, 0 &lt;= index &lt; length()
+	 * @return value in the slot, null if empty
+	 */
+	E get(int index);
+
+	/**
+	 * write one slot.
+	 * @param index slot, 0 &lt;= index &lt; length()
+	 * @param value new value, null to empty the slot
+	 */
+	void set(int index, E value);
+
+	/**
+	 * make the store longer, the new slots are empty.
+	 * @param newLength new number of slots, ignored if not larger than length()
+	 */
+	void grow(int newLength);
+
+	/**
+	 * find the first occupied slot in a range.
+	 * @param from first slot of the range
+	 * @param to end of the range, exclusive
+	 * @return the first occupied slot in [from, to), -1 if there is none
+	 */
+	int nextOccupied(int from, int to);
+
+	/**
+	 * indexes of all occupied slots.
+	 * @return the indexes in ascending order
+	 */
+	int[] occupied();
+
+	/**
+	 * read-only point-in-time view that shares pages with this store.
+	 * @return the view, its writes throw UnsupportedOperationException
+	 * @throws UnsupportedOperationException if the store cannot share its pages
+	 */
+	ThreeTenSlotStore<E> snapshot();
+
+	/**
+	 * release a snapshot, so the live store stops copying the pages only it held.
+	 * does nothing on a live in-memory store or a closed snapshot; a file-backed store
+	 * writes its changes out and closes its files.
+	 */
+	void close();
+}
@@ -0,0 +1,363 @@
+/**
+ * sparse tree storage: a hash map from slot index to value.
+ * Memory grows with the number of occupied slots, not with length(),
+ * so a deep tree with few nodes per level stays small.
+ * Open addressing with linear probing over a power-of-two table;
+ * removal shifts the probe chain back, so there are no tombstones.
+ * snapshot() is O(1): the view keeps the current table, the live store copies it
+ * on its first write while an open snapshot still shares it.
+ * @param <E> takes any data types
+ * @author Phat Tran
+ */
+public class ThreeTenSparseSlotStore<E> implements ThreeTenSlotStore<E> {
+
+	/**
+	 * slot indexes held in the table, valid where values[i] != null.
+	 */
+	private int[] keys;
+
+	/**
+	 * values of the table, null means empty entry.
+	 */
+	private Object[] values;
+
+	/**
+	 * number of occupied slots.
+	 */
+	private int count;
+
+	/**
+	 * logical number of slots.
+	 */
+	private int length;
+
+	/**
+	 * current version of the live store, every snapshot() starts a new one.
+	 */
+	private long version;
+
+	/**
+	 * version in which keys and values were allocated or last copied.
+	 */
+	private long tableVersion;
+
+	/**
+	 * versions of the open snapshots and how many are open of each, shared by a live store
+	 * and its snapshots.
+	 */
+	private final java.util.TreeMap<Long, Integer> openSnapshots;
+
+	/**
+	 * version this snapshot was taken at, -1 for the live store.
+	 */
+	private final long snapshotVersion;
+
+	/**
+	 * whether this snapshot has been closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Constructor.
+	 * @param length number of slots, all empty
+	 * @param expected number of occupied slots to make room for
+	 */
+	public ThreeTenSparseSlotStore(int length, int expected) {
+		this.length = length;
+		int cap = ThreeTenHashTable.nextPowerOfTwo((int)Math.min((long)expected * 2 + 2, 1 << 30));
+		keys = new int[cap];
+		values = new Object[cap];
+		openSnapshots = new java.util.TreeMap<>();
+		snapshotVersion = -1;
+	}
+
+	/**
+	 * Constructor of a read-only snapshot.
+	 * @param live store the snapshot is taken of
+	 * @param version version the snapshot is taken at
+	 */
+	private ThreeTenSparseSlotStore(ThreeTenSparseSlotStore<E> live, long version) {
+		length = live.length;
+		keys = live.keys;
+		values = live.values;
+		count = live.count;
+		openSnapshots = live.openSnapshots;
+		snapshotVersion = version;
+	}
+
+	/**
+	 * O(1).
+	 * @return number of addressable slots
+	 */
+	@Override
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * O(1).
+	 * @return number of occupied slots
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * find the table entry of a slot index.
+	 * Average case: O(1).
+	 * @param index slot index
+	 * @return entry holding index, or the empty entry where it would go
+	 */
+	private int find(int index) {
+		int mask = keys.length - 1;
+		int i = ThreeTenHashTable.spread(index) & mask;
+		while(values[i] != null && keys[i] != index){
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * read one slot.
+	 * Average case: O(1).
+	 * @param index slot index
+	 * @return value in the slot, null if empty
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		return (E) values[find(index)];
+	}
+
+	/**
+	 * write one slot.
+	 * Average case: O(1).
+	 * @param index slot index
+	 * @param value new value, null to empty the slot
+	 */
+	@Override
+	public void set(int index, E value) {
+		if(snapshotVersion != -1){
+			throw new UnsupportedOperationException("snapshots are read-only");
+		}
+		int i = find(index);
+		if(value == null && values[i] == null){//nothing to clear
+			return;
+		}
+		if(tableVersion != version){//copy the table if a snapshot still uses it
+			synchronized(openSnapshots){
+				if(!openSnapshots.isEmpty() && openSnapshots.lastKey() >= tableVersion){
+					keys = keys.clone();
+					values = values.clone();
+				}
+			}
+			tableVersion = version;
+		}
+		if(value == null){
+			removeAt(i);
+			return;
+		}
+		if(values[i] == null){
+			keys[i] = index;
+			count++;
+			if(count * 2 > keys.length){//keep load at most 0.5
+				values[i] = value;
+				resize(keys.length * 2);
+				return;
+			}
+		}
+		values[i] = value;
+	}
+
+	/**
+	 * empty one table entry and shift the rest of its probe chain back.
+	 * Average case: O(1).
+	 * @param hole entry to empty
+	 */
+	private void removeAt(int hole) {
+		int mask = keys.length - 1;
+		int next = hole;
+		while(true){//backward shift deletion
+			next = (next + 1) & mask;
+			if(values[next] == null){
+				break;
+			}
+			int home = ThreeTenHashTable.spread(keys[next]) & mask;
+			//the entry at next can move into the hole only if its home
+			//is not cyclically inside (hole, next]
+			boolean inRange = (hole <= next) ? (hole < home && home <= next) : (hole < home || home <= next);
+			if(!inRange){
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+		}
+		values[hole] = null;
+		count--;
+	}
+
+	/**
+	 * move all entries into a table of the given capacity.
+	 * O(n) where n is the capacity.
+	 * @param cap new capacity, a power of two
+	 */
+	private void resize(int cap) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[cap];
+		values = new Object[cap];
+		tableVersion = version;
+		for(int j = 0; j < oldKeys.length; j++){
+			if(oldValues[j] != null){
+				int i = find(oldKeys[j]);
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	/**
+	 * make the store longer. Nothing is allocated.
+	 * O(1).
+	 * @param newLength new number of slots, ignored if not larger than length()
+	 */
+	@Override
+	public void grow(int newLength) {
+		if(snapshotVersion != -1){
+			throw new UnsupportedOperationException("snapshots are read-only");
+		}
+		length = Math.max(length, newLength);
+	}
+
+	/**
+	 * find the first occupied slot in a range.
+	 * Short ranges look each slot up, long ones scan the table.
+	 * O(min(r, n)) where r is the length of the range and n the capacity of the table.
+	 * @param from first slot of the range
+	 * @param to end of the range, exclusive
+	 * @return the first occupied slot in [from, to), -1 if there is none
+	 */
+	@Override
+	public int nextOccupied(int from, int to) {
+		from = Math.max(from, 0);
+		to = Math.min(to, length);
+		if((long)to - from <= keys.length){
+			for(int i = from; i < to; i++){
+				if(values[find(i)] != null){
+					return i;
+				}
+			}
+			return -1;
+		}
+		int best = -1;
+		for(int i = 0; i < keys.length; i++){
+			if(values[i] != null && keys[i] >= from && keys[i] < to && (best == -1 || keys[i] < best)){
+				best = keys[i];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * indexes of all occupied slots.
+	 * O(n log n) where n is the number of occupied slots.
+	 * @return the indexes in ascending order
+	 */
+	@Override
+	public int[] occupied() {
+		int[] out = new int[count];
+		int c = 0;
+		for(int i = 0; i < keys.length; i++){
+			if(values[i] != null){
+				out[c++] = keys[i];
+			}
+		}
+		java.util.Arrays.sort(out);
+		return out;
+	}
+
+	/**
+	 * read-only view of the current contents.
+	 * O(1); the live store copies its table on the next write.
+	 * @return the snapshot, close() it when done
+	 */
+	@Override
+	public ThreeTenSparseSlotStore<E> snapshot() {
+		long taken = version;
+		version++;
+		synchronized(openSnapshots){
+			openSnapshots.merge(taken, 1, Integer::sum);
+		}
+		return new ThreeTenSparseSlotStore<E>(this, taken);
+	}
+
+	/**
+	 * release this snapshot, so the live store writes its table in place again.
+	 * O(log s) where s is the number of open snapshot versions.
+	 */
+	@Override
+	public void close() {
+		if(snapshotVersion == -1 || closed){
+			return;
+		}
+		closed = true;
+		synchronized(openSnapshots){
+			int left = openSnapshots.get(snapshotVersion) - 1;
+			if(left == 0){
+				openSnapshots.remove(snapshotVersion);
+			}
+			else{
+				openSnapshots.put(snapshotVersion, left);
+			}
+		}
+	}
+
+	//-------------------------------------------------------------
+	// TESTING CODE
+	//-------------------------------------------------------------
+
+	/**
+	 * for testing purposes.
+	 * @param args command line argument
+	 */
+	public static void main(String[] args) {
+		ThreeTenSparseSlotStore<String> s = new ThreeTenSparseSlotStore<>(1 << 30, 2);
+
+		//set, get, overwrite, far apart slots
+		s.set(0, "A");
+		s.set(1 << 29, "B");
+		s.set(7, "C");
+		s.set(7, "D");
+		if(s.get(0).equals("A") && s.get(1 << 29).equals("B") && s.get(7).equals("D") && s.get(8) == null
+			&& s.count() == 3 && java.util.Arrays.equals(s.occupied(), new int[] {0, 7, 1 << 29})
+			&& s.nextOccupied(1, 1 << 30) == 7 && s.nextOccupied(8, 12) == -1) {
+			System.out.println("Yay 1");
+		}
+
+		//removal keeps the other slots reachable
+		for(int i = 100; i < 200; i++){
+			s.set(i, "x" + i);
+		}
+		for(int i = 100; i < 200; i += 2){
+			s.set(i, null);
+		}
+		boolean all = s.count() == 53;
+		for(int i = 100; i < 200 && all; i++){
+			all = (i % 2 == 0) ? s.get(i) == null : s.get(i).equals("x" + i);
+		}
+		if(all) {
+			System.out.println("Yay 2");
+		}
+
+		//snapshot keeps its contents while the live store changes
+		ThreeTenSparseSlotStore<String> snap = s.snapshot();
+		s.set(7, "E");
+		s.set(101, null);
+		s.set(500, "F");
+		if(snap.get(7).equals("D") && snap.get(101).equals("x101") && snap.get(500) == null && snap.count() == 53
+			&& s.get(7).equals("E") && s.get(101) == null && s.count() == 53) {
+			System.out.println("Yay 3");
+		}
+		snap.close();
+	}
+}
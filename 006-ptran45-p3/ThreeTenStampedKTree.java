@@ -0,0 +1,288 @@
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * thread-safe ThreeTenKTree for read-mostly use.
+ * - size()/capacity()/height()/get() run optimistically: take a stamp, read one field or slot
+ *   without locking, validate the stamp. If a writer got in between (or the read tripped over
+ *   its half-done change and threw), the read is repeated under the shared read lock.
+ * - reads that look values up in the index or walk the tree always take the read lock,
+ *   so they never run over a half-done change.
+ * - set()/remove() take the exclusive write lock, which also covers growing storage.
+ * Readers never block each other and never write shared memory in the common case.
+ * @param <E> takes any data types
+ * @author Phat Tran
+ */
+public class ThreeTenStampedKTree<E> {
+
+	/**
+	 * the unsynchronized tree being guarded.
+	 */
+	private final ThreeTenKTree<E> tree;
+
+	/**
+	 * guards every access to tree.
+	 */
+	private final StampedLock lock = new StampedLock();
+
+	/**
+	 * Constructor.
+	 * @param length length of the storage array
+	 * @param k numbers of children a node can have the most
+	 */
+	public ThreeTenStampedKTree(int length, int k) {
+		tree = new ThreeTenKTree<E>(length, k);
+	}
+
+	/**
+	 * Constructor.
+	 * bulk-load the tree from its level-order tokens, see ThreeTenKTree(List, int).
+	 * @param tokens node values in level order, null for an empty slot
+	 * @param k numbers of children a node can have the most
+	 */
+	public ThreeTenStampedKTree(java.util.List<? extends E> tokens, int k) {
+		tree = new ThreeTenKTree<E>(tokens, k);
+	}
+
+	/**
+	 * run a read optimistically, falling back to the read lock.
+	 * only for reads of a single field or slot.
+	 * @param <T> result type
+	 * @param read the read to run against tree
+	 * @return result of the read on a consistent tree
+	 */
+	private <T> T read(Supplier<T> read) {
+		long stamp = lock.tryOptimisticRead();
+		if(stamp != 0){
+			try{
+				T result = read.get();
+				if(lock.validate(stamp)){
+					return result;
+				}
+			}
+			catch(RuntimeException e){//saw a half-done write, the result would be dropped anyway
+			}
+		}
+		return locked(read);
+	}
+
+	/**
+	 * run a read under the read lock.
+	 * @param <T> result type
+	 * @param read the read to run against tree
+	 * @return result of the read on a consistent tree
+	 */
+	private <T> T locked(Supplier<T> read) {
+		long stamp = lock.readLock();
+		try{
+			return read.get();
+		}
+		finally{
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * report number of non-null nodes in tree.
+	 * O(1).
+	 * @return size - number of non-null nodes in tree
+	 */
+	public int size() {
+		return read(tree::size);
+	}
+
+	/**
+	 * report the length of storage.
+	 * O(1).
+	 * @return numbers of nodes of a perfect tree of the current height.
+	 */
+	public int capacity() {
+		return read(tree::capacity);
+	}
+
+	/**
+	 * report the tree height.
+	 * O(1).
+	 * @return the treeHeight
+	 */
+	public int height() {
+		return read(tree::height);
+	}
+
+	/**
+	 * get the node at specified index of the tree.
+	 * O(1).
+	 * @param index index of the node
+	 * @return the node, null for invalid index or index with no node
+	 */
+	public E get(int index) {
+		return read(() -> tree.get(index));
+	}
+
+	/**
+	 * Determine if value is in tree or not.
+	 * O(1) assuming hash table search is O(1).
+	 * @param value node is used to check if there is this node in the tree
+	 * @return true if a tree node has value; false otherwise.
+	 */
+	public boolean has(E value) {
+		return locked(() -> tree.has(value));
+	}
+
+	/**
+	 * check if a node is a leaf node.
+	 * @param value will be used to check if this node is a leaf
+	 * @return true if a leaf node has value; false otherwise
+	 */
+	public boolean isLeaf(E value) {
+		return locked(() -> tree.isLeaf(value));
+	}
+
+	/**
+	 * children of the node with the given value, see ThreeTenKTree.getChildren.
+	 * @param value the node is used to check its children
+	 * @return string should include all children, from left to right, and separated by a single space
+	 */
+	public String getChildren(E value) {
+		return locked(() -> tree.getChildren(value));
+	}
+
+	/**
+	 * storage indexes from the root down to the node, see ThreeTenKTree.getAncestorIndexes.
+	 * @param value the node will be used to check its ancestors
+	 * @return indexes from the root down to the node, null if value is not present
+	 */
+	public int[] getAncestorIndexes(E value) {
+		return locked(() -> tree.getAncestorIndexes(value));
+	}
+
+	/**
+	 * ancestors of the node as a string, see ThreeTenKTree.getAncestors.
+	 * @param value the node will be used to check its ancestors
+	 * @return a string including all the ancestors and the node itself. Otherwise, return null
+	 */
+	public String getAncestors(E value) {
+		return locked(() -> tree.getAncestors(value));
+	}
+
+	/**
+	 * nodes in level order, see ThreeTenKTree.toStringLevelOrder.
+	 * @return a string contains node in level order
+	 */
+	public String toStringLevelOrder() {
+		return locked(tree::toStringLevelOrder);
+	}
+
+	/**
+	 * all slots by level, see ThreeTenKTree.toString.
+	 * @return string contains all nodes, including null, of the tree
+	 */
+	@Override
+	public String toString() {
+		return locked(tree::toString);
+	}
+
+	/**
+	 * set value at the specified index under the write lock, see ThreeTenKTree.set.
+	 * @param index where we want to store the node in storage array
+	 * @param value value of the node, null to remove a leaf
+	 * @return true if successfully set, otherwise false
+	 */
+	public boolean set(int index, E value) {
+		long stamp = lock.writeLock();
+		try{
+			return tree.set(index, value);
+		}
+		finally{
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Remove value from tree if value is in a leaf node, under the write lock.
+	 * @param value will be removed
+	 * @return true if value if a leaf. Otherwise, false
+	 */
+	public boolean remove(E value) {
+		long stamp = lock.writeLock();
+		try{
+			return tree.remove(value);
+		}
+		finally{
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * point-in-time view of the tree, see ThreeTenKTree.snapshot.
+	 * taken under the write lock; reading it needs no lock, since the tree
+	 * copies every shared page before writing to it.
+	 * @return the snapshot, close() it when done
+	 */
+	public ThreeTenKTree<E> snapshot() {
+		long stamp = lock.writeLock();
+		try{
+			return tree.snapshot();
+		}
+		finally{
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	//-------------------------------------------------------------
+	// TESTING CODE
+	//-------------------------------------------------------------
+
+	/**
+	 * for testing purposes.
+	 * @param args command line argument
+	 * @throws InterruptedException if interrupted while joining the threads
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		ThreeTenStampedKTree<Integer> t = new ThreeTenStampedKTree<>(7, 2);
+
+		//same behavior as ThreeTenKTree
+		if(t.set(0, 0) && t.set(2, 2) && t.set(6, 6) && t.set(5, 5) && t.height() == 2 && t.size() == 4
+			&& t.getAncestors(6).equals("0-->2-->6") && t.getChildren(2).equals("5 6") && t.isLeaf(5)
+			&& t.remove(6) && !t.has(6) && t.toStringLevelOrder().equals("0 2 5")) {
+			System.out.println("Yay 1");
+		}
+
+		//readers see a consistent tree while a writer keeps growing and shrinking it
+		final ThreeTenStampedKTree<Integer> shared = new ThreeTenStampedKTree<>(1, 2);
+		for(int i = 0; i < 1023; i++){
+			shared.set(i, i);
+		}
+		final boolean[] ok = {true, true};
+		Thread[] readers = new Thread[2];
+		for(int r = 0; r < readers.length; r++){
+			final int id = r;
+			readers[r] = new Thread(() -> {
+				for(int i = 0; i < 200000; i++){
+					int v = i % 1023;
+					if(!shared.has(v) || shared.getAncestorIndexes(v)[0] != 0 || shared.getChildren(511) == null){
+						ok[id] = false;
+					}
+				}
+			});
+			readers[r].start();
+		}
+		ThreeTenKTree<Integer> snap = shared.snapshot();
+		for(int round = 0; round < 200; round++){//add and drop a whole level
+			for(int i = 1023; i < 2047; i++){
+				shared.set(i, i);
+			}
+			for(int i = 2046; i >= 1023; i--){
+				shared.set(i, null);
+			}
+		}
+		for(Thread r : readers){
+			r.join();
+		}
+		if(ok[0] && ok[1] && shared.size() == 1023 && shared.height() == 9
+			&& snap.size() == 1023 && snap.getAncestors(1022).equals("0-->2-->6-->14-->30-->62-->126-->254-->510-->1022")) {
+			System.out.println("Yay 2");
+		}
+		snap.close();
+	}
+}
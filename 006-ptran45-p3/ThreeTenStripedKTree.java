@@ -0,0 +1,657 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * thread-safe k-ary tree for several producers filling disjoint subtrees.
+ * Same implicit layout and set/remove rules as ThreeTenKTree, but writes lock only
+ * the subtree they touch:
+ * - every node at depth stripeDepth roots one stripe; a node below it belongs to the
+ *   stripe of its ancestor at that depth, found in closed form from its offset in its level.
+ *   Nodes above stripeDepth share one top lock.
+ * - a write locks its node's stripe, plus the top lock when its parent lies above the
+ *   stripe depth (always top before stripe), so parent and child checks never race.
+ * - adding a level swaps in a longer chunk directory under the write side of growLock;
+ *   every set() holds the read side, so writes to different stripes still run in parallel.
+ * - values are claimed in a ThreeTenConcurrentHashTable with putIfAbsent, so two stripes
+ *   can never add the same value; size and per-level counts are atomic.
+ * Reads never lock: slots live in AtomicReferenceArray chunks and see the latest write of each slot.
+ * @param <E> takes any data types
+ * @author Phat Tran
+ */
+public class ThreeTenStripedKTree<E> {
+
+	/**
+	 * slot i lives at chunks[i &gt;&gt;&gt; CHUNK_SHIFT][i &amp; CHUNK_MASK], chunks are allocated on first write.
+	 */
+	private volatile AtomicReferenceArray<AtomicReferenceArray<E>> chunks;
+
+	/**
+	 * log2 of the number of slots per chunk.
+	 */
+	private static final int CHUNK_SHIFT = ThreeTenSegmentedArray.CHUNK_SHIFT;
+
+	/**
+	 * mask for the offset of a slot inside its chunk.
+	 */
+	private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+	/**
+	 * length of storage, numbers of nodes of a perfect tree of the allocated height.
+	 */
+	private volatile int capacity;
+
+	/**
+	 * hash Map from value to its index in storage.
+	 */
+	private final ThreeTenConcurrentHashTable<E, Integer> indexMap;
+
+	/**
+	 * number of K (children that 1 node can have the most).
+	 */
+	private final int branchK;
+
+	/**
+	 * depth of the stripe roots, 0 puts the whole tree in one stripe.
+	 */
+	private final int stripeDepth;
+
+	/**
+	 * one lock per node at stripeDepth, in level order.
+	 */
+	private final ReentrantLock[] stripes;
+
+	/**
+	 * guards the nodes above stripeDepth.
+	 */
+	private final ReentrantLock topLock = new ReentrantLock();
+
+	/**
+	 * read side held by every set(), write side by the one adding a level.
+	 */
+	private final ReentrantReadWriteLock growLock = new ReentrantReadWriteLock();
+
+	/**
+	 * numbers of node in the tree.
+	 */
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * levelStart[L] is the storage index of the leftmost node on level L.
+	 * the last entry is the first index beyond the int range.
+	 */
+	private final long[] levelStart;
+
+	/**
+	 * levelCount[L] is the number of nodes on level L.
+	 */
+	private final AtomicIntegerArray levelCount;
+
+	/**
+	 * Constructor.
+	 * @param length length of the storage array
+	 * @param k numbers of children a node can have the most
+	 * @param stripeDepth depth whose nodes each get a lock, k^stripeDepth locks in total
+	 */
+	public ThreeTenStripedKTree(int length, int k, int stripeDepth) {
+		branchK = k;
+		int levels = 1;
+		for(long start = 0; start <= Integer.MAX_VALUE; start = start * k + 1){
+			levels++;
+		}
+		levelStart = new long[levels];
+		for(int i = 1; i < levels; i++){
+			levelStart[i] = levelStart[i - 1] * k + 1;
+		}
+		levelCount = new AtomicIntegerArray(levels);
+		this.stripeDepth = Math.max(0, Math.min(stripeDepth, levels - 2));
+		stripes = new ReentrantLock[(int)Math.min(levelStart[this.stripeDepth + 1] - levelStart[this.stripeDepth], 1 << 20)];
+		for(int i = 0; i < stripes.length; i++){
+			stripes[i] = new ReentrantLock();
+		}
+		indexMap = new ThreeTenConcurrentHashTable<E, Integer>(Math.max(length, 16),
+			Math.max(ThreeTenConcurrentHashTable.defaultConcurrencyLevel, Math.min(stripes.length, 256)));
+		capacity = Math.max(length, 1);
+		chunks = new AtomicReferenceArray<AtomicReferenceArray<E>>(((capacity - 1) >>> CHUNK_SHIFT) + 1);
+	}
+
+	/**
+	 * Constructor.
+	 * one stripe per child of the root.
+	 * @param length length of the storage array
+	 * @param k numbers of children a node can have the most
+	 */
+	public ThreeTenStripedKTree(int length, int k) {
+		this(length, k, 1);
+	}
+
+	/**
+	 * getter for branchK.
+	 * O(1).
+	 * @return branchK
+	 */
+	public int getBranch() {
+		return branchK;
+	}
+
+	/**
+	 * report number of non-null nodes in tree.
+	 * O(1).
+	 * @return size - number of non-null nodes in tree
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * report the length of storage.
+	 * O(1).
+	 * @return numbers of nodes of a perfect tree of the current height.
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * report the tree height, the deepest level holding a node.
+	 * O(h) where h is the number of levels.
+	 * @return the treeHeight
+	 */
+	public int height() {
+		for(int level = levelCount.length() - 1; level > 0; level--){
+			if(levelCount.get(level) > 0){
+				return level;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * O(1).
+	 * @return number of stripe locks
+	 */
+	public int stripeCount() {
+		return stripes.length;
+	}
+
+	/**
+	 * find the level of a storage index from the closed-form level offsets.
+	 * O(log h) where h is the number of levels.
+	 * @param index index in storage
+	 * @return level of the index, 0 for the root
+	 */
+	private int levelOf(int index) {
+		int pos = java.util.Arrays.binarySearch(levelStart, index);
+		return (pos >= 0) ? pos : -pos - 2;
+	}
+
+	/**
+	 * the lock guarding a slot.
+	 * the offset of index in its level divided by k^(level - stripeDepth) is the offset
+	 * of its stripe root in level stripeDepth.
+	 * O(1).
+	 * @param index storage index
+	 * @param level level of index
+	 * @return its stripe lock, or topLock above stripeDepth
+	 */
+	private ReentrantLock lockOf(int index, int level) {
+		if(level < stripeDepth){
+			return topLock;
+		}
+		long width = levelStart[level - stripeDepth + 1] - levelStart[level - stripeDepth];//k^(level - stripeDepth)
+		long root = (index - levelStart[level]) / width;
+		return stripes[(int)(root % stripes.length)];
+	}
+
+	/**
+	 * read a slot without locking.
+	 * O(1).
+	 * @param index storage index, 0 &lt;= index &lt; capacity
+	 * @return the value, null if empty
+	 */
+	private E slot(int index) {
+		AtomicReferenceArray<E> chunk = chunks.get(index >>> CHUNK_SHIFT);
+		return (chunk == null) ? null : chunk.get(index & CHUNK_MASK);
+	}
+
+	/**
+	 * write a slot, allocating its chunk if needed. Caller holds the slot's lock.
+	 * O(1), O(CHUNK_SIZE) when a chunk is allocated.
+	 * @param index storage index, 0 &lt;= index &lt; capacity
+	 * @param value new value, null to empty the slot
+	 */
+	private void writeSlot(int index, E value) {
+		AtomicReferenceArray<AtomicReferenceArray<E>> dir = chunks;
+		int c = index >>> CHUNK_SHIFT;
+		AtomicReferenceArray<E> chunk = dir.get(c);
+		if(chunk == null){//stripes sharing the chunk race to allocate it, one wins
+			dir.compareAndSet(c, null, new AtomicReferenceArray<E>(1 << CHUNK_SHIFT));
+			chunk = dir.get(c);
+		}
+		chunk.set(index & CHUNK_MASK, value);
+	}
+
+	/**
+	 * make storage long enough for the level of index.
+	 * O(d) where d is the number of chunks in the directory.
+	 * @param index storage index of the new node
+	 * @return false if that level would not fit in an array; otherwise true
+	 */
+	private boolean grow(int index) {
+		long length = levelStart[levelOf(index) + 1];
+		if(length > Integer.MAX_VALUE - 8){//larger than any array
+			return false;
+		}
+		growLock.writeLock().lock();
+		try{
+			if(capacity < length){
+				AtomicReferenceArray<AtomicReferenceArray<E>> old = chunks;
+				AtomicReferenceArray<AtomicReferenceArray<E>> dir =
+					new AtomicReferenceArray<AtomicReferenceArray<E>>((int)((length - 1) >>> CHUNK_SHIFT) + 1);
+				for(int c = 0; c < old.length(); c++){
+					dir.set(c, old.get(c));
+				}
+				chunks = dir;
+				capacity = (int)length;
+			}
+			return true;
+		}
+		finally{
+			growLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * set value at the specified index, see ThreeTenKTree.set.
+	 * Locks the node's stripe (and the top lock for a stripe root), and takes
+	 * the write side of growLock only when a new level is needed.
+	 * O(1) assuming hash table operations are O(1), O(d) when adding a level.
+	 * @param index where we want to store the node in storage array
+	 * @param value value of the node, null to remove a leaf
+	 * @return true if successfully set, otherwise false
+	 */
+	public boolean set(int index, E value) {
+		if(index < 0){
+			return false;
+		}
+		if(value != null && index >= capacity){
+			int parent = (index - 1)/branchK;
+			if(index == 0 || parent >= capacity || slot(parent) == null || has(value) || !grow(index)){//grow only for a valid new node
+				return false;
+			}
+		}
+		return write(index, value, null);
+	}
+
+	/**
+	 * set or clear a slot under its locks, see set().
+	 * O(1) assuming hash table operations are O(1).
+	 * @param index storage index, at least 0
+	 * @param value value of the node, null to remove a leaf
+	 * @param expected value the removed leaf must hold, null for any
+	 * @return true if successfully set, otherwise false
+	 */
+	private boolean write(int index, E value, E expected) {
+		growLock.readLock().lock();
+		try{
+			if(index >= capacity){
+				return false;
+			}
+			int level = levelOf(index);
+			ReentrantLock own = lockOf(index, level);
+			ReentrantLock parentLock = (level == stripeDepth && level > 0) ? topLock : null;
+			if(parentLock != null){
+				parentLock.lock();
+			}
+			own.lock();
+			try{
+				return (value == null) ? clear(index, level, expected) : put(index, value, level);
+			}
+			finally{
+				own.unlock();
+				if(parentLock != null){
+					parentLock.unlock();
+				}
+			}
+		}
+		finally{
+			growLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * add or replace a node. Caller holds the locks of the node and its parent.
+	 * O(1) assuming hash table operations are O(1).
+	 * @param index storage index
+	 * @param value value of the node
+	 * @param level level of index
+	 * @return true if successfully set, otherwise false
+	 */
+	private boolean put(int index, E value, int level) {
+		E old = slot(index);
+		if(old == null && index != 0 && slot((index - 1)/branchK) == null){//no parent so cannot add child
+			return false;
+		}
+		if(indexMap.putIfAbsent(value, index) != null){//value already in tree
+			return false;
+		}
+		if(old != null){//replace
+			indexMap.remove(old);
+			writeSlot(index, value);
+			return true;
+		}
+		writeSlot(index, value);
+		levelCount.incrementAndGet(level);
+		size.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * remove a leaf node. Caller holds the locks of the node and its children.
+	 * O(K) where K is the branching factor.
+	 * @param index storage index
+	 * @param level level of index
+	 * @param expected value the leaf must hold, null for any
+	 * @return true if a leaf was removed, otherwise false
+	 */
+	private boolean clear(int index, int level, E expected) {
+		E old = slot(index);
+		if(old == null || (expected != null && !expected.equals(old)) || hasChild(index)){
+			return false;
+		}
+		writeSlot(index, null);
+		indexMap.remove(old);
+		levelCount.decrementAndGet(level);
+		size.decrementAndGet();
+		return true;
+	}
+
+	/**
+	 * O(K) where K is the branching factor.
+	 * @param index storage index of the node
+	 * @return true if the node has at least one child
+	 */
+	private boolean hasChild(int index) {
+		long first = (long)branchK * index + 1;
+		long end = Math.min(first + branchK, capacity);
+		for(long i = first; i < end; i++){
+			if(slot((int)i) != null){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * get the node at specified index of the tree. Never locks.
+	 * O(1).
+	 * @param index index of the node
+	 * @return the node, null for invalid index or index with no node
+	 */
+	public E get(int index) {
+		if((index < 0) || (index >= capacity)){
+			return null;
+		}
+		return slot(index);
+	}
+
+	/**
+	 * Determine if value is in tree or not. Never locks.
+	 * O(1) assuming hash table search is O(1).
+	 * @param value node is used to check if there is this node in the tree
+	 * @return true if a tree node has value; false otherwise.
+	 */
+	public boolean has(E value) {
+		return (value != null) && (indexMap.get(value) != null);
+	}
+
+	/**
+	 * check if a node is a leaf node. Never locks.
+	 * O(K) where K is the branching factor, assuming hash table search is O(1).
+	 * @param value will be used to check if this node is a leaf
+	 * @return true if a leaf node has value; false otherwise
+	 */
+	public boolean isLeaf(E value) {
+		Integer index = (value == null) ? null : indexMap.get(value);
+		return (index != null) && !hasChild(index);
+	}
+
+	/**
+	 * Remove value from tree if value is in a leaf node.
+	 * The slot is checked again under its lock, so a value replaced in the meantime is kept.
+	 * O(K) where K is the branching factor, assuming hash table operations are O(1).
+	 * @param value will be removed
+	 * @return true if value if a leaf. Otherwise, false
+	 */
+	public boolean remove(E value) {
+		Integer index = (value == null) ? null : indexMap.get(value);
+		return (index != null) && write(index, null, value);
+	}
+
+	/**
+	 * children of the node with the given value, from left to right. Never locks.
+	 * O(K) where K is the branching factor, assuming hash table search is O(1).
+	 * @param value the node is used to check its children
+	 * @return children separated by a single space, empty for a leaf, null if value is not present
+	 */
+	public String getChildren(E value) {
+		Integer index = (value == null) ? null : indexMap.get(value);
+		if(index == null){
+			return null;
+		}
+		StringBuilder string = new StringBuilder();
+		long first = (long)branchK * index + 1;
+		long end = Math.min(first + branchK, capacity);
+		for(long i = first; i < end; i++){
+			E child = slot((int)i);
+			if(child != null){
+				if(string.length() > 0){
+					string.append(" ");
+				}
+				string.append(child);
+			}
+		}
+		return string.toString();
+	}
+
+	/**
+	 * ancestors of the node from the root down, separated by "-->". Never locks.
+	 * O(height) assuming hash table search is O(1).
+	 * @param value the node will be used to check its ancestors
+	 * @return a string including all the ancestors and the node itself, null if value is not present
+	 */
+	public String getAncestors(E value) {
+		Integer index = (value == null) ? null : indexMap.get(value);
+		if(index == null){
+			return null;
+		}
+		int[] path = new int[levelOf(index) + 1];
+		int i = index;
+		for(int p = path.length - 1; p >= 0; p--){
+			path[p] = i;
+			i = (i - 1)/branchK;
+		}
+		StringBuilder string = new StringBuilder();
+		for(int p = 0; p < path.length; p++){
+			if(p > 0){
+				string.append("-->");
+			}
+			string.append(slot(path[p]));
+		}
+		return string.toString();
+	}
+
+	/**
+	 * all nodes in level order, separated by a single space.
+	 * O(c) where c is the capacity.
+	 * @return a string contains node in level order
+	 */
+	public String toStringLevelOrder() {
+		StringBuilder string = new StringBuilder();
+		int cap = capacity;
+		for(int i = 0; i < cap; i++){
+			E value = slot(i);
+			if(value != null){
+				if(string.length() > 0){
+					string.append(" ");
+				}
+				string.append(value);
+			}
+		}
+		return string.toString();
+	}
+
+	/**
+	 * copy the tree into a ThreeTenKTree through its bulk constructor,
+	 * once the producers are done.
+	 * O(c) where c is the index of the last node.
+	 * @return a single-threaded tree with the same nodes
+	 */
+	public ThreeTenKTree<E> toKTree() {
+		int last = capacity - 1;
+		while(last >= 0 && slot(last) == null){
+			last--;
+		}
+		final int length = last + 1;
+		return new ThreeTenKTree<E>(new java.util.AbstractList<E>() {
+			@Override
+			public E get(int i) {
+				return slot(i);
+			}
+
+			@Override
+			public int size() {
+				return length;
+			}
+		}, branchK);
+	}
+
+	//-------------------------------------------------------------
+	// TESTING CODE
+	//-------------------------------------------------------------
+
+	/**
+	 * for testing purposes.
+	 * @param args command line argument
+	 * @throws InterruptedException if interrupted while joining the producers
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		ThreeTenStripedKTree<Integer> t = new ThreeTenStripedKTree<>(7, 2);
+
+		//same behavior as ThreeTenKTree
+		if(t.stripeCount() == 2 && t.set(0, 0) && t.set(2, 2) && t.set(6, 6) && t.set(5, 5) && !t.set(3, 3)
+			&& !t.set(1, 5) && t.height() == 2 && t.size() == 4 && t.getAncestors(6).equals("0-->2-->6")
+			&& t.getChildren(2).equals("5 6") && t.isLeaf(5) && !t.remove(2) && t.remove(6) && !t.has(6)
+			&& t.set(11, 11) && t.capacity() == 15 && t.height() == 3 && t.set(5, 50) && !t.has(5)
+			&& t.toStringLevelOrder().equals("0 2 50 11") && t.set(11, null) && t.height() == 2) {
+			System.out.println("Yay 1");
+		}
+
+		//four producers fill the four subtrees of a 4-ary root in parallel, adding levels as they go
+		final ThreeTenStripedKTree<Integer> shared = new ThreeTenStripedKTree<>(1, 4, 1);
+		shared.set(0, 0);
+		final int levels = 8;
+		Thread[] producers = new Thread[4];
+		for(int p = 0; p < producers.length; p++){
+			final int child = p + 1;
+			producers[p] = new Thread(() -> {
+				long first = child;
+				long count = 1;
+				for(int level = 1; level <= levels; level++){//the subtree of child, level by level
+					for(long i = first; i < first + count; i++){
+						shared.set((int)i, (int)i);
+					}
+					first = first * 4 + 1;
+					count *= 4;
+				}
+			});
+			producers[p].start();
+		}
+		for(Thread p : producers){
+			p.join();
+		}
+		ThreeTenKTree<Integer> copy = shared.toKTree();
+		boolean all = shared.size() == 87381 && shared.height() == 8 && copy.size() == 87381;
+		for(int i = 0; i < 87381 && all; i++){
+			all = shared.get(i) == i && shared.has(i) && copy.get(i) == i;
+		}
+		if(all && shared.getAncestors(87380).equals(copy.getAncestors(87380))) {
+			System.out.println("Yay 2");
+		}
+
+		//producers racing on the same values: each value lands once
+		final ThreeTenStripedKTree<Integer> race = new ThreeTenStripedKTree<>(5, 4, 1);
+		race.set(0, -1);
+		for(int p = 0; p < producers.length; p++){
+			final int child = p + 1;
+			producers[p] = new Thread(() -> {
+				race.set(child, child);
+				for(int i = 0; i < 4; i++){
+					race.set(child * 4 + 1 + i, 100 + i);//same four values in every subtree
+				}
+			});
+			producers[p].start();
+		}
+		for(Thread p : producers){
+			p.join();
+		}
+		if(race.size() == 9 && race.has(100) && race.has(103) && race.toKTree().size() == 9) {
+			System.out.println("Yay 3");
+		}
+
+		//remove(b) racing with a replace of b by a never removes a
+		final ThreeTenStripedKTree<Integer> swap = new ThreeTenStripedKTree<>(17, 16, 1);
+		final int rounds = 2000;
+		final int[] round = {0};
+		final boolean[] kept = {true};
+		swap.set(0, -1);
+		for(int i = 1; i <= 16; i++){
+			swap.set(i, 2 * i);//b of round 0 in leaf i is 2 * (17 * round + i), a is b + 1
+		}
+		final java.util.concurrent.CyclicBarrier barrier = new java.util.concurrent.CyclicBarrier(2, () -> {
+			for(int i = 1; i <= 16; i++){//every leaf ends the round holding a
+				Integer a = swap.get(i);
+				kept[0] = kept[0] && a != null && a == 2 * (17 * round[0] + i) + 1 && swap.has(a);
+			}
+			round[0]++;
+			for(int i = 1; i <= 16; i++){
+				swap.set(i, 2 * (17 * round[0] + i));
+			}
+		});
+		Thread remover = new Thread(() -> {
+			try{
+				for(int r = 0; r < rounds; r++){
+					for(int i = 1; i <= 16; i++){
+						swap.remove(2 * (17 * r + i));
+					}
+					barrier.await();
+				}
+			}
+			catch(Exception e){
+				kept[0] = false;
+			}
+		});
+		Thread replacer = new Thread(() -> {
+			try{
+				for(int r = 0; r < rounds; r++){
+					for(int i = 16; i >= 1; i--){
+						swap.set(i, 2 * (17 * r + i) + 1);
+					}
+					barrier.await();
+				}
+			}
+			catch(Exception e){
+				kept[0] = false;
+			}
+		});
+		remover.start();
+		replacer.start();
+		remover.join();
+		replacer.join();
+		if(kept[0] && swap.size() == 17) {
+			System.out.println("Yay 4");
+		}
+	}
+}
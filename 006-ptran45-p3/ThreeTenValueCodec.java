@@ -0,0 +1,116 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * fixed-width binary form of a tree value, used by ThreeTenMappedSlotStore to keep
+ * values in a memory-mapped file. Each value takes exactly width() bytes, so slot i
+ * lives at a fixed offset and can be read without touching any other slot.
+ * @param <E> takes any data types
+ * @author Phat Tran
+ */
+public interface ThreeTenValueCodec<E> {
+
+	/**
+	 * number of bytes of one encoded value.
+	 * @return the width, at least 1
+	 */
+	int width();
+
+	/**
+	 * write a value.
+	 * @param value non-null value
+	 * @param buf buffer to write into
+	 * @param offset absolute position of the first byte, width() bytes are available
+	 */
+	void encode(E value, ByteBuffer buf, int offset);
+
+	/**
+	 * read a value back.
+	 * @param buf buffer to read from
+	 * @param offset absolute position of the first byte
+	 * @return the value that encode() wrote there
+	 */
+	E decode(ByteBuffer buf, int offset);
+
+	/**
+	 * 4-byte ints.
+	 * @return the codec
+	 */
+	static ThreeTenValueCodec<Integer> ints() {
+		return new ThreeTenValueCodec<Integer>() {
+			@Override
+			public int width() {
+				return 4;
+			}
+
+			@Override
+			public void encode(Integer value, ByteBuffer buf, int offset) {
+				buf.putInt(offset, value);
+			}
+
+			@Override
+			public Integer decode(ByteBuffer buf, int offset) {
+				return buf.getInt(offset);
+			}
+		};
+	}
+
+	/**
+	 * 8-byte longs.
+	 * @return the codec
+	 */
+	static ThreeTenValueCodec<Long> longs() {
+		return new ThreeTenValueCodec<Long>() {
+			@Override
+			public int width() {
+				return 8;
+			}
+
+			@Override
+			public void encode(Long value, ByteBuffer buf, int offset) {
+				buf.putLong(offset, value);
+			}
+
+			@Override
+			public Long decode(ByteBuffer buf, int offset) {
+				return buf.getLong(offset);
+			}
+		};
+	}
+
+	/**
+	 * UTF-8 strings of at most maxBytes bytes, after a 2-byte length.
+	 * encode() throws IllegalArgumentException for a longer string.
+	 * @param maxBytes longest encoded string, at most 65535
+	 * @return the codec
+	 */
+	static ThreeTenValueCodec<String> strings(int maxBytes) {
+		return new ThreeTenValueCodec<String>() {
+			@Override
+			public int width() {
+				return 2 + maxBytes;
+			}
+
+			@Override
+			public void encode(String value, ByteBuffer buf, int offset) {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				if(bytes.length > maxBytes){
+					throw new IllegalArgumentException("value longer than " + maxBytes + " bytes: " + value);
+				}
+				buf.putShort(offset, (short)bytes.length);
+				for(int i = 0; i < bytes.length; i++){
+					buf.put(offset + 2 + i, bytes[i]);
+				}
+			}
+
+			@Override
+			public String decode(ByteBuffer buf, int offset) {
+				byte[] bytes = new byte[buf.getShort(offset) & 0xffff];
+				for(int i = 0; i < bytes.length; i++){
+					bytes[i] = buf.get(offset + 2 + i);
+				}
+				return new String(bytes, StandardCharsets.UTF_8);
+			}
+		};
+	}
+}